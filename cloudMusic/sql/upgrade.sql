@@ -0,0 +1,39 @@
+-- 数据库结构升级脚本（按顺序执行）
+
+-- 音乐文件内容摘要：相同内容的音乐共用同一个文件
+ALTER TABLE music ADD COLUMN content_hash CHAR(64) NULL COMMENT '文件内容摘要（SHA-256）';
+CREATE INDEX idx_music_content_hash ON music (content_hash);
+
+-- 游标分页：按 (create_time, id) 或歌单内 (position, id) 定位，避免深分页扫描
+CREATE INDEX idx_music_create_time ON music (deleted, create_time, id);
+CREATE INDEX idx_music_menu_create_by ON music_menu (create_by, deleted, create_time, id);
+CREATE INDEX idx_music_menu_relation_position ON music_menu_relation (menu_id, deleted, position, id);
+CREATE INDEX idx_user_create_time ON user (deleted, create_time, id);
+
+-- 歌单排序改为带间隔的数值排序：新增、移动只修改一行，间隔用尽时再重新编号
+-- 先按原有先后（数值顺序）重新编号，消除重复、错序的位置，再修改列类型
+UPDATE music_menu_relation t1
+INNER JOIN (
+    SELECT id, ROW_NUMBER() OVER (PARTITION BY menu_id, deleted ORDER BY CAST(position AS SIGNED), id) - 1 AS row_index
+    FROM music_menu_relation
+) t2 ON t2.id = t1.id
+SET t1.position = t2.row_index * 1024;
+ALTER TABLE music_menu_relation MODIFY COLUMN position BIGINT NOT NULL DEFAULT 0 COMMENT '排序（间隔为1024的数值，越小越靠前）';
+
+-- 歌单音乐数量、总时长（秒）：添加、删除音乐时增量维护，定时任务校正
+ALTER TABLE music_menu ADD COLUMN music_count INT NOT NULL DEFAULT 0 COMMENT '音乐数量';
+ALTER TABLE music_menu ADD COLUMN total_duration BIGINT NOT NULL DEFAULT 0 COMMENT '音乐总时长（秒）';
+CREATE INDEX idx_music_menu_relation_music ON music_menu_relation (music_id, deleted);
+UPDATE music_menu mm
+INNER JOIN (
+    SELECT mmr.menu_id, count(1) AS music_count,
+           SUM(CASE WHEN m.duration REGEXP '^[0-9]+:[0-9]{1,2}$'
+                    THEN CAST(SUBSTRING_INDEX(m.duration, ':', 1) AS SIGNED) * 60
+                         + CAST(SUBSTRING_INDEX(m.duration, ':', -1) AS SIGNED)
+                    ELSE 0 END) AS total_duration
+    FROM music_menu_relation mmr
+    INNER JOIN music m ON m.deleted = '0' AND m.id = mmr.music_id
+    WHERE mmr.deleted = '0'
+    GROUP BY mmr.menu_id
+) n ON n.menu_id = mm.id
+SET mm.music_count = n.music_count, mm.total_duration = n.total_duration;
@@ -0,0 +1,29 @@
+package org.xioamila.common.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 列表总数缓存
+ * 游标分页默认不统计总数；需要总数时按查询条件缓存一段时间，避免每翻一页都执行 COUNT
+ */
+@Component
+public class CountCache {
+
+    private final Cache<String, Long> cache = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(30, TimeUnit.SECONDS)
+            .build();
+
+    /**
+     * 获取总数，缓存中没有时执行统计
+     * @param key 查询条件（需包含列表类型）
+     */
+    public long get(String key, Supplier<Long> counter) {
+        return cache.get(key, k -> counter.get());
+    }
+}
@@ -0,0 +1,174 @@
+package org.xioamila.common.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.xioamila.entity.MusicMenuRelation;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 歌单内容缓存
+ * 每个歌单按顺序缓存关系id、音乐id和位置三个 long 数组（不保存音乐信息），
+ * 列表页从数组中截取一段后再按音乐id从 {@link MusicCache} 取音乐信息；
+ * 按缓存的音乐数量淘汰，歌单修改、删除时显式失效
+ */
+@Component
+public class MenuMusicCache {
+
+    private final Cache<String, MenuContents> cache;
+
+    public MenuMusicCache(@Value("${app.cache.menu.maximum-tracks:1000000}") long maximumTracks) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumTracks)
+                .weigher((String menuId, MenuContents contents) -> contents.size() + 1)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 获取歌单内容，缓存中没有时加载
+     * @param titleLoader 查询歌单标题，歌单不存在时返回 null
+     * @param loader 按顺序查询歌单中的音乐关系（id、musicId、position）
+     * @return id 不是数字、无法用数组保存时返回 null（不缓存），调用方应直接查询数据库
+     */
+    public MenuContents get(String menuId, Function<String, String> titleLoader,
+                            Function<String, List<MusicMenuRelation>> loader) {
+        return cache.get(menuId, id -> {
+            String title = titleLoader.apply(id);
+            return title == null ? MenuContents.EMPTY : MenuContents.of(title, loader.apply(id));
+        });
+    }
+
+    /**
+     * 失效缓存：立即失效，存在事务时在提交后再失效一次，避免提交前被其他请求重新加载旧数据
+     */
+    public void invalidate(String menuId) {
+        cache.invalidate(menuId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(menuId);
+                }
+            });
+        }
+    }
+
+    /**
+     * 批量失效缓存
+     */
+    public void invalidateAll(Collection<String> menuIds) {
+        for (String menuId : menuIds) {
+            invalidate(menuId);
+        }
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public Map<String, Object> getMetrics() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("size", cache.estimatedSize());
+        metrics.put("tracks", cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L));
+        metrics.put("hitCount", stats.hitCount());
+        metrics.put("missCount", stats.missCount());
+        metrics.put("hitRate", stats.hitRate());
+        metrics.put("evictionCount", stats.evictionCount());
+        return metrics;
+    }
+
+    /**
+     * 歌单内容：按歌单顺序（position、id）排列的关系id、音乐id、位置，创建后不再修改
+     */
+    @Getter
+    public static class MenuContents {
+
+        static final MenuContents EMPTY = new MenuContents(null, new long[0], new long[0], new long[0]);
+
+        private final String menuTitle;
+
+        private final long[] relationIds;
+
+        private final long[] musicIds;
+
+        private final long[] positions;
+
+        private MenuContents(String menuTitle, long[] relationIds, long[] musicIds, long[] positions) {
+            this.menuTitle = menuTitle;
+            this.relationIds = relationIds;
+            this.musicIds = musicIds;
+            this.positions = positions;
+        }
+
+        /**
+         * @return 存在不能与 long 互相转换的 id 时返回 null
+         */
+        static MenuContents of(String menuTitle, List<MusicMenuRelation> relations) {
+            int size = relations.size();
+            long[] relationIds = new long[size];
+            long[] musicIds = new long[size];
+            long[] positions = new long[size];
+            for (int i = 0; i < size; i++) {
+                MusicMenuRelation relation = relations.get(i);
+                Long relationId = toLong(relation.getId());
+                Long musicId = toLong(relation.getMusicId());
+                if (relationId == null || musicId == null) {
+                    return null;
+                }
+                relationIds[i] = relationId;
+                musicIds[i] = musicId;
+                positions[i] = relation.getPosition() == null ? 0 : relation.getPosition();
+            }
+            return new MenuContents(menuTitle, relationIds, musicIds, positions);
+        }
+
+        /**
+         * 只接受转换后能原样还原的数字 id（雪花算法生成的 id）
+         */
+        private static Long toLong(String id) {
+            if (id == null || id.isEmpty() || id.length() > 19) {
+                return null;
+            }
+            try {
+                long value = Long.parseLong(id);
+                return Long.toString(value).equals(id) ? value : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        public int size() {
+            return relationIds.length;
+        }
+
+        /**
+         * 游标之后的第一条的下标：与 SQL 的 ORDER BY position, id 一致，位置相同时按 id 字符串比较
+         */
+        public int indexAfter(long cursorPosition, String cursorId) {
+            int low = 0;
+            int high = positions.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (positions[mid] < cursorPosition || (positions[mid] == cursorPosition
+                        && (cursorId == null || Long.toString(relationIds[mid]).compareTo(cursorId) <= 0))) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.xioamila.common.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.xioamila.entity.Music;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 音乐元数据缓存
+ * 播放、下载、封面请求（一首歌会产生大量 Range 请求）按id读取音乐信息时先查缓存；
+ * 按容量淘汰（W-TinyLFU），修改、删除时显式失效；缓存中的对象为共享实例，调用方不得修改
+ */
+@Component
+public class MusicCache {
+
+    private final Cache<String, Music> cache;
+
+    public MusicCache(@Value("${app.cache.music.maximum-size:10000}") long maximumSize,
+                      @Value("${app.cache.music.expire-after-write:600000}") long expireAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 获取音乐信息，缓存中没有时加载（不存在的音乐不缓存）
+     */
+    public Music get(String id, Function<String, Music> loader) {
+        return cache.get(id, loader);
+    }
+
+    /**
+     * 批量获取音乐信息，缓存中没有的一次加载（不存在的音乐不在返回结果中）
+     */
+    public Map<String, Music> getAll(Collection<String> ids, Function<Set<String>, Map<String, Music>> loader) {
+        return cache.getAll(ids, missing -> {
+            Set<String> keys = new HashSet<>();
+            for (String id : missing) {
+                keys.add(id);
+            }
+            return loader.apply(keys);
+        });
+    }
+
+    /**
+     * 失效缓存：立即失效，存在事务时在提交后再失效一次，避免提交前被其他请求重新加载旧数据
+     */
+    public void invalidate(String id) {
+        cache.invalidate(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(id);
+                }
+            });
+        }
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public Map<String, Object> getMetrics() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("size", cache.estimatedSize());
+        metrics.put("hitCount", stats.hitCount());
+        metrics.put("missCount", stats.missCount());
+        metrics.put("hitRate", stats.hitRate());
+        metrics.put("evictionCount", stats.evictionCount());
+        metrics.put("loadFailureCount", stats.loadFailureCount());
+        return metrics;
+    }
+}
@@ -0,0 +1,59 @@
+package org.xioamila.common.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.apache.coyote.http11.AbstractHttp11Protocol;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 响应压缩策略
+ * 只压缩文本和 JSON：音频、图片等本身已压缩的内容即使出现在 server.compression.mime-types 中也会被剔除；
+ * 带强 ETag 的响应（音乐播放、下载、封面，包括所有 Range 响应）由 Tomcat 默认跳过压缩，以保留 sendfile、Content-Length 和字节区间语义
+ */
+@Slf4j
+@Configuration
+public class CompressionConfig {
+
+    // 允许压缩的MIME类型前缀
+    private static final List<String> COMPRESSIBLE_PREFIXES = Arrays.asList(
+            "text/", "application/json", "application/javascript", "application/xml", "application/problem+json");
+
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> compressionPolicyCustomizer() {
+        // 连接器自定义在 server.compression 配置应用之后执行
+        return factory -> factory.addConnectorCustomizers(connector -> {
+            ProtocolHandler handler = connector.getProtocolHandler();
+            if (!(handler instanceof AbstractHttp11Protocol)) {
+                return;
+            }
+            AbstractHttp11Protocol<?> protocol = (AbstractHttp11Protocol<?>) handler;
+
+            List<String> allowed = new ArrayList<>();
+            for (String mimeType : protocol.getCompressibleMimeTypes()) {
+                if (isCompressible(mimeType)) {
+                    allowed.add(mimeType);
+                } else {
+                    log.warn("忽略不可压缩的MIME类型: {}", mimeType);
+                }
+            }
+            protocol.setCompressibleMimeType(String.join(",", allowed));
+        });
+    }
+
+    private static boolean isCompressible(String mimeType) {
+        String lowerCase = mimeType.trim().toLowerCase();
+        for (String prefix : COMPRESSIBLE_PREFIXES) {
+            if (lowerCase.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -23,4 +23,19 @@ public class JwtProperties {
      * JWT 请求头名称
      */
     private String header = "X-Access-Token";
+
+    /**
+     * 已验证Token缓存数量
+     */
+    private Long cacheSize = 10000L;
+
+    /**
+     * 同一客户端在窗口内允许的无效Token次数（不含缺少、过期的Token），超过后不再验证新的Token，直接返回429
+     */
+    private Integer rejectLimit = 20;
+
+    /**
+     * 认证失败计数窗口（毫秒）
+     */
+    private Long rejectWindow = 60000L;
 }
\ No newline at end of file
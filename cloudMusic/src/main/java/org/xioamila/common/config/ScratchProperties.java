@@ -0,0 +1,27 @@
+package org.xioamila.common.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.file.scratch")
+public class ScratchProperties {
+
+    /**
+     * 临时文件目录（相对于项目根目录），为空时使用音乐目录下的 .scratch
+     * 应与音乐目录位于同一磁盘，上传文件移动到音乐目录时只需重命名
+     */
+    private String path;
+
+    /**
+     * 临时空间配额（字节），超出后拒绝新的分配
+     */
+    private Long quota = 2L * 1024 * 1024 * 1024;
+
+    /**
+     * 临时文件最长保留时间（毫秒），超过后由清理任务回收
+     */
+    private Long maxAge = 3600000L;
+}
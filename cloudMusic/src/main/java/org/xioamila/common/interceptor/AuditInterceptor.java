@@ -1,185 +1,260 @@
 package org.xioamila.common.interceptor;
 
+import lombok.extern.slf4j.Slf4j;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.plugin.*;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.xioamila.common.utils.SecurityUtil;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 /**
  * 审计字段自动填充拦截器
  * 自动维护 create_time, create_by, update_time, update_by 字段
  */
+@Slf4j
 @Component
 @Intercepts({
         @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class})
 })
 public class AuditInterceptor implements Interceptor {
 
+    // 事务内共用的审计上下文的资源键
+    private static final Object CONTEXT_KEY = new Object();
+
+    // 统一的 setter 签名：(实体, 值) -> void
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    /**
+     * 每个类的审计字段访问器，首次使用时查找字段并生成 MethodHandle，之后直接复用
+     */
+    private static final ClassValue<AuditAccessor> ACCESSORS = new ClassValue<AuditAccessor>() {
+        @Override
+        protected AuditAccessor computeValue(Class<?> type) {
+            return AuditAccessor.of(type);
+        }
+    };
+
     @Override
     public Object intercept(Invocation invocation) throws Throwable {
         MappedStatement mappedStatement = (MappedStatement) invocation.getArgs()[0];
         SqlCommandType sqlCommandType = mappedStatement.getSqlCommandType();
         Object parameter = invocation.getArgs()[1];
-        System.out.println("parameter: " + parameter);
-        // 获取当前用户信息
-        String currentUserId = SecurityUtil.getUserId();
-        Date now = new Date();
-
-        // 处理插入操作
-        if (sqlCommandType == SqlCommandType.INSERT) {
-            handleInsert(parameter, currentUserId, now);
-        }
 
-        // 处理更新操作
-        if (sqlCommandType == SqlCommandType.UPDATE) {
-            handleUpdate(parameter, currentUserId, now);
+        // 处理插入、更新操作
+        if (parameter != null && (sqlCommandType == SqlCommandType.INSERT || sqlCommandType == SqlCommandType.UPDATE)) {
+            // 获取当前用户信息
+            AuditContext context = currentContext();
+            processEntityFields(parameter, sqlCommandType == SqlCommandType.INSERT, context.userId, context.now);
         }
 
         return invocation.proceed();
     }
 
     /**
-     * 处理插入操作的字段填充
+     * 当前的用户和时间
+     * 存在事务时在整个事务内共用一份（saveBatch 等批量操作逐条执行时只获取一次），事务结束后清除
      */
-    private void handleInsert(Object parameter, String userId, Date now) {
-        if (parameter == null) return;
-
-        // 直接处理所有实体对象
-        processEntityFields(parameter, true, userId, now);
-    }
-
-    /**
-     * 处理更新操作的字段填充
-     */
-    private void handleUpdate(Object parameter, String userId, Date now) {
-        if (parameter == null) return;
-
-        // 直接处理所有实体对象
-        processEntityFields(parameter, false, userId, now);
+    private AuditContext currentContext() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return new AuditContext(SecurityUtil.getUserId(), new Date());
+        }
+        AuditContext context = (AuditContext) TransactionSynchronizationManager.getResource(CONTEXT_KEY);
+        if (context == null) {
+            context = new AuditContext(SecurityUtil.getUserId(), new Date());
+            TransactionSynchronizationManager.bindResource(CONTEXT_KEY, context);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CONTEXT_KEY);
+                }
+            });
+        }
+        return context;
     }
 
     /**
      * 处理实体字段的通用方法
+     * 批量操作的集合（MyBatis-Plus 的 coll / list、foreach 使用的 list / array 等）整体填充，
+     * 同一个集合在参数 Map 中以多个键出现时只处理一次
      * @param parameter 参数对象
      * @param isInsert 是否为插入操作
      * @param userId 用户ID
      * @param now 当前时间
      */
     private void processEntityFields(Object parameter, boolean isInsert, String userId, Date now) {
-        try {
-            // 1. 如果是Map类型，遍历所有值
-            if (parameter instanceof Map) {
-                Map<?, ?> paramMap = (Map<?, ?>) parameter;
-                for (Object value : paramMap.values()) {
-                    if (value != null && isEntityObject(value)) {
-                        setAuditFields(value, isInsert, userId, now);
-                    }
+        // 1. 如果是Map类型，遍历所有值
+        if (parameter instanceof Map) {
+            Map<?, ?> paramMap = (Map<?, ?>) parameter;
+            Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Object value : paramMap.values()) {
+                if (value != null && visited.add(value)) {
+                    processValue(value, isInsert, userId, now);
                 }
-                return;
             }
+            return;
+        }
 
-            // 2. 直接处理实体对象
-            if (isEntityObject(parameter)) {
-                setAuditFields(parameter, isInsert, userId, now);
-            }
+        // 2. 直接处理实体对象或集合
+        processValue(parameter, isInsert, userId, now);
+    }
 
-        } catch (Exception e) {
-            System.out.println("处理审计字段时发生异常: " + e.getMessage());
+    private void processValue(Object value, boolean isInsert, String userId, Date now) {
+        if (value instanceof Collection) {
+            setAuditFields((Collection<?>) value, isInsert, userId, now);
+        } else if (value instanceof Object[]) {
+            setAuditFields(Arrays.asList((Object[]) value), isInsert, userId, now);
+        } else {
+            setAuditFields(value, isInsert, userId, now);
         }
     }
 
     /**
-     * 判断是否为实体对象（有我们需要的审计字段）
+     * 填充集合中的所有实体（相邻元素类型相同时复用访问器，id 集合等非实体元素只判断一次类型）
      */
-    private boolean isEntityObject(Object obj) {
-        if (obj == null) return false;
-
-        Class<?> clazz = obj.getClass();
-        try {
-            // 检查是否包含审计字段
-            return hasField(clazz, "createTime") &&
-                    hasField(clazz, "createBy") &&
-                    hasField(clazz, "updateTime") &&
-                    hasField(clazz, "updateBy");
-        } catch (Exception e) {
-            return false;
+    private void setAuditFields(Collection<?> entities, boolean isInsert, String userId, Date now) {
+        Class<?> lastType = null;
+        AuditAccessor accessor = AuditAccessor.NONE;
+        for (Object entity : entities) {
+            if (entity == null) {
+                continue;
+            }
+            if (entity.getClass() != lastType) {
+                lastType = entity.getClass();
+                accessor = ACCESSORS.get(lastType);
+            }
+            if (accessor != AuditAccessor.NONE) {
+                accessor.fill(entity, isInsert, userId, now);
+            }
         }
     }
 
     /**
-     * 设置审计字段
+     * 设置审计字段（没有全部审计字段的对象不处理）
      */
     private void setAuditFields(Object entity, boolean isInsert, String userId, Date now) {
-        try {
-            Class<?> clazz = entity.getClass();
-
-            if (isInsert) {
-                // 插入操作：设置创建和更新字段
-                setFieldValue(entity, clazz, "createTime", now);
-                setFieldValue(entity, clazz, "createBy", userId);
-            } else {
-                // 更新操作：只设置更新字段
-                setFieldValue(entity, clazz, "updateTime", now);
-                setFieldValue(entity, clazz, "updateBy", userId);
-            }
-
-        } catch (Exception e) {
-            System.out.println("设置审计字段失败: " + e.getMessage());
+        AuditAccessor accessor = ACCESSORS.get(entity.getClass());
+        if (accessor != AuditAccessor.NONE) {
+            accessor.fill(entity, isInsert, userId, now);
         }
     }
 
     /**
-     * 检查类是否有指定字段
+     * 一次写入使用的用户和时间
      */
-    private boolean hasField(Class<?> clazz, String fieldName) {
-        try {
-            Field field = clazz.getDeclaredField(fieldName);
-            return field != null;
-        } catch (NoSuchFieldException e) {
-            // 检查父类
-            if (clazz.getSuperclass() != null) {
-                return hasField(clazz.getSuperclass(), fieldName);
-            }
-            return false;
+    private static final class AuditContext {
+
+        final String userId;
+
+        final Date now;
+
+        AuditContext(String userId, Date now) {
+            this.userId = userId;
+            this.now = now;
         }
     }
 
     /**
-     * 设置字段值
+     * 审计字段的 setter
      */
-    private void setFieldValue(Object obj, Class<?> clazz, String fieldName, Object value) {
-        try {
-            Field field = getDeclaredField(clazz, fieldName);
-            if (field != null) {
-                field.setAccessible(true);
-                Object currentValue = field.get(obj);
-
-                field.set(obj, value);
+    private static final class AuditAccessor {
+
+        // 不是审计实体
+        static final AuditAccessor NONE = new AuditAccessor(null, null, null, null, null);
+
+        final Class<?> type;
+
+        final MethodHandle createTime;
+
+        final MethodHandle createBy;
+
+        final MethodHandle updateTime;
+
+        final MethodHandle updateBy;
+
+        private AuditAccessor(Class<?> type, MethodHandle createTime, MethodHandle createBy,
+                              MethodHandle updateTime, MethodHandle updateBy) {
+            this.type = type;
+            this.createTime = createTime;
+            this.createBy = createBy;
+            this.updateTime = updateTime;
+            this.updateBy = updateBy;
+        }
+
+        static AuditAccessor of(Class<?> type) {
+            Field createTime = findField(type, "createTime");
+            Field createBy = findField(type, "createBy");
+            Field updateTime = findField(type, "updateTime");
+            Field updateBy = findField(type, "updateBy");
+            if (createTime == null || createBy == null || updateTime == null || updateBy == null) {
+                return NONE;
+            }
+            try {
+                return new AuditAccessor(type, setter(createTime), setter(createBy), setter(updateTime), setter(updateBy));
+            } catch (IllegalAccessException | RuntimeException e) {
+                log.warn("无法访问审计字段，跳过审计字段填充: {}", type.getName(), e);
+                return NONE;
             }
-        } catch (Exception e) {
-            // 忽略字段设置异常
         }
-    }
 
-    /**
-     * 递归获取字段（包括父类）
-     */
-    private Field getDeclaredField(Class<?> clazz, String fieldName) {
-        try {
-            return clazz.getDeclaredField(fieldName);
-        } catch (NoSuchFieldException e) {
-            if (clazz.getSuperclass() != null) {
-                return getDeclaredField(clazz.getSuperclass(), fieldName);
+        /**
+         * 递归获取字段（包括父类）
+         */
+        private static Field findField(Class<?> type, String fieldName) {
+            for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+                try {
+                    return current.getDeclaredField(fieldName);
+                } catch (NoSuchFieldException e) {
+                    // 继续查找父类
+                }
             }
             return null;
         }
+
+        private static MethodHandle setter(Field field) throws IllegalAccessException {
+            field.setAccessible(true);
+            return MethodHandles.lookup().unreflectSetter(field).asType(SETTER_TYPE);
+        }
+
+        void fill(Object entity, boolean isInsert, String userId, Date now) {
+            if (isInsert) {
+                // 插入操作：设置创建和更新字段
+                set(createTime, entity, now);
+                set(createBy, entity, userId);
+            } else {
+                // 更新操作：只设置更新字段
+                set(updateTime, entity, now);
+                set(updateBy, entity, userId);
+            }
+        }
+
+        /**
+         * 设置字段值（字段类型不匹配时忽略）
+         */
+        void set(MethodHandle setter, Object entity, Object value) {
+            try {
+                setter.invokeExact(entity, value);
+            } catch (RuntimeException e) {
+                log.debug("设置审计字段失败: {}", type.getName(), e);
+            } catch (Throwable e) {
+                throw new IllegalStateException("设置审计字段失败: " + type.getName(), e);
+            }
+        }
     }
 
     @Override
@@ -191,4 +266,4 @@ public class AuditInterceptor implements Interceptor {
     public void setProperties(Properties properties) {
         // 可以在这里配置属性
     }
-}
\ No newline at end of file
+}
@@ -1,20 +1,83 @@
 package org.xioamila.common.interceptor;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
+import org.xioamila.common.config.JwtProperties;
 import org.xioamila.common.context.UserContext;
 import org.xioamila.common.utils.SecurityUtil;
 import org.xioamila.entity.User;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Component
 public class JwtInterceptor implements HandlerInterceptor {
 
+    private static final String MISSING_TOKEN = "缺少访问令牌";
+    private static final String EXPIRED_TOKEN = "Token已过期";
+    private static final String MALFORMED_TOKEN = "Token格式错误";
+    private static final String INVALID_SIGNATURE = "Token签名验证失败";
+    private static final String INVALID_TOKEN = "Token验证失败";
+    private static final String TOO_MANY_REJECTIONS = "认证失败次数过多，请稍后重试";
+
+    private static final int UNAUTHORIZED = 401;
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final ObjectMapper objectMapper;
+
+    // 固定错误信息的响应体，启动时序列化一次
+    private final Map<String, byte[]> errorBodies = new HashMap<>();
+
+    // 验证失败的 Token 摘要 -> 错误信息，重复使用时不再验证
+    private final Cache<String, String> rejectedTokens;
+
+    // 客户端 -> 窗口内的无效 Token 次数（不含缺少、过期的 Token）
+    private final Cache<String, AtomicInteger> rejections;
+
+    // 是否部署在代理之后（按转发的客户端地址区分客户端）
+    private final boolean proxy;
+
+    private final int rejectLimit;
+
+    private final long rejectWindowSeconds;
+
+    public JwtInterceptor(ObjectMapper objectMapper, JwtProperties jwtProperties,
+                          @Value("${app.network.proxy:false}") boolean proxy) throws JsonProcessingException {
+        this.objectMapper = objectMapper;
+        this.proxy = proxy;
+        this.rejectLimit = jwtProperties.getRejectLimit();
+        this.rejectWindowSeconds = Math.max(TimeUnit.MILLISECONDS.toSeconds(jwtProperties.getRejectWindow()), 1);
+        this.rejectedTokens = Caffeine.newBuilder()
+                .maximumSize(jwtProperties.getCacheSize())
+                .expireAfterWrite(10, TimeUnit.MINUTES)
+                .build();
+        this.rejections = Caffeine.newBuilder()
+                .maximumSize(jwtProperties.getCacheSize())
+                .expireAfterWrite(jwtProperties.getRejectWindow(), TimeUnit.MILLISECONDS)
+                .build();
+
+        errorBodies.put(MISSING_TOKEN, serialize(UNAUTHORIZED, MISSING_TOKEN));
+        errorBodies.put(EXPIRED_TOKEN, serialize(UNAUTHORIZED, EXPIRED_TOKEN));
+        errorBodies.put(MALFORMED_TOKEN, serialize(UNAUTHORIZED, MALFORMED_TOKEN));
+        errorBodies.put(INVALID_SIGNATURE, serialize(UNAUTHORIZED, INVALID_SIGNATURE));
+        errorBodies.put(INVALID_TOKEN, serialize(UNAUTHORIZED, INVALID_TOKEN));
+        errorBodies.put(TOO_MANY_REJECTIONS, serialize(TOO_MANY_REQUESTS, TOO_MANY_REJECTIONS));
+    }
+
     @Override
     public boolean preHandle(HttpServletRequest request,
                              HttpServletResponse response,
@@ -30,31 +93,54 @@ public class JwtInterceptor implements HandlerInterceptor {
 
         // 检查是否缺少token
         if (token == null || token.trim().isEmpty()) {
-            sendErrorResponse(response, 401, "缺少访问令牌");
+            sendErrorResponse(response, UNAUTHORIZED, MISSING_TOKEN);
+            return false;
+        }
+
+        // 已验证失败过的token直接拒绝
+        String digest = SecurityUtil.tokenDigest(token);
+        String rejected = rejectedTokens.getIfPresent(digest);
+        if (rejected != null) {
+            sendErrorResponse(response, UNAUTHORIZED, rejected);
+            return false;
+        }
+
+        // 无效token次数超过上限的客户端，不再为新的token验证签名（已过期的token仍返回401，以便重新登录）
+        String client = clientAddress(request);
+        if (isThrottled(client) && !SecurityUtil.isTokenCached(digest)) {
+            if (isExpired(token)) {
+                sendErrorResponse(response, UNAUTHORIZED, EXPIRED_TOKEN);
+            } else {
+                response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(rejectWindowSeconds));
+                sendErrorResponse(response, TOO_MANY_REQUESTS, TOO_MANY_REJECTIONS);
+            }
             return false;
         }
 
         try {
-            // 验证token是否有效
-            SecurityUtil.validateToken(token);
-            // 解析token并创建User对象
-            User user = SecurityUtil.createUserFromToken(token);
+            // 验证token并创建User对象（同一token只验证一次签名）
+            User user = SecurityUtil.verifyToken(token, digest);
             // 将用户信息存入上下文
             UserContext.setUser(user);
+            rejections.invalidate(client);
             return true;
 
         } catch (Exception e) {
             // Token验证失败
-            String errorMessage = "Token验证失败";
-            if (e.getMessage().contains("Token已过期")) {
-                errorMessage = "Token已过期";
-            } else if (e.getMessage().contains("Token格式错误")) {
-                errorMessage = "Token格式错误";
-            } else if (e.getMessage().contains("Token签名验证失败")) {
-                errorMessage = "Token签名验证失败";
+            String errorMessage = INVALID_TOKEN;
+            if (e.getMessage().contains(EXPIRED_TOKEN)) {
+                errorMessage = EXPIRED_TOKEN;
+            } else if (e.getMessage().contains(MALFORMED_TOKEN)) {
+                errorMessage = MALFORMED_TOKEN;
+            } else if (e.getMessage().contains(INVALID_SIGNATURE)) {
+                errorMessage = INVALID_SIGNATURE;
             }
 
-            sendErrorResponse(response, 401, errorMessage);
+            rejectedTokens.put(digest, errorMessage);
+            if (!EXPIRED_TOKEN.equals(errorMessage)) {
+                rejections.get(client, k -> new AtomicInteger()).incrementAndGet();
+            }
+            sendErrorResponse(response, UNAUTHORIZED, errorMessage);
             return false;
         }
     }
@@ -69,19 +155,69 @@ public class JwtInterceptor implements HandlerInterceptor {
     }
 
     /**
-     * 发送错误响应
+     * 客户端在窗口内的无效token次数是否已超过上限
+     */
+    private boolean isThrottled(String client) {
+        AtomicInteger count = rejections.getIfPresent(client);
+        return count != null && count.get() >= rejectLimit;
+    }
+
+    /**
+     * 客户端地址：部署在代理之后时取 X-Forwarded-For 中的第一个地址（其次 X-Real-IP）
+     */
+    private String clientAddress(HttpServletRequest request) {
+        if (proxy) {
+            String forwarded = request.getHeader("X-Forwarded-For");
+            if (forwarded != null && !forwarded.trim().isEmpty()) {
+                int comma = forwarded.indexOf(',');
+                return (comma < 0 ? forwarded : forwarded.substring(0, comma)).trim();
+            }
+            String realIp = request.getHeader("X-Real-IP");
+            if (realIp != null && !realIp.trim().isEmpty()) {
+                return realIp.trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    /**
+     * 不验证签名，只读取 exp 判断token是否已过期（只用于决定拒绝时返回的信息，不用于认证）
+     */
+    private boolean isExpired(String token) {
+        try {
+            String[] parts = token.split("\\.");
+            if (parts.length < 2) {
+                return false;
+            }
+            JsonNode exp = objectMapper.readTree(new String(Base64.getUrlDecoder().decode(parts[1]),
+                    StandardCharsets.UTF_8)).get("exp");
+            return exp != null && exp.isNumber() && exp.asLong() * 1000 < System.currentTimeMillis();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * 发送错误响应（使用预先序列化的响应体）
      */
     private void sendErrorResponse(HttpServletResponse response, int code, String message) throws Exception {
+        byte[] body = errorBodies.get(message);
+        if (body == null) {
+            body = serialize(code, message);
+        }
+
         response.setStatus(code);
         response.setContentType("application/json;charset=UTF-8");
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
 
-        Map<String, Object> result = new HashMap<>();
+    private byte[] serialize(int code, String message) throws JsonProcessingException {
+        Map<String, Object> result = new LinkedHashMap<>();
         result.put("success", false);
         result.put("code", code);
         result.put("message", message);
         result.put("data", null);
-
-        ObjectMapper objectMapper = new ObjectMapper();
-        response.getWriter().write(objectMapper.writeValueAsString(result));
+        return objectMapper.writeValueAsBytes(result);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,363 @@
+package org.xioamila.common.search;
+
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.xioamila.entity.Music;
+import org.xioamila.mapper.MusicMapper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 音乐目录全文检索（进程内倒排索引）
+ * 对歌曲标题、歌手、专辑建立索引，支持中日韩文字分词、字母数字前缀匹配、拼音首字母匹配，并按相关度排序；
+ * 启动后从数据库加载，之后随上传、修改、删除增量更新（事务提交后生效）
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MusicSearchIndex {
+
+    // 字段位：原文词项使用低 3 位，拼音首字母词项使用高 3 位
+    public static final int FIELD_TITLE = 1;
+    public static final int FIELD_SINGER = 2;
+    public static final int FIELD_ALBUM = 4;
+    public static final int ALL_FIELDS = FIELD_TITLE | FIELD_SINGER | FIELD_ALBUM;
+    private static final int PINYIN_SHIFT = 3;
+
+    private final MusicMapper musicMapper;
+
+    private final ThreadPoolTaskExecutor taskExecutor;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 词项 -> (音乐id -> 字段位)，按词项排序以支持前缀查找
+    private final TreeMap<String, Map<String, Integer>> postings = new TreeMap<>();
+
+    private final Map<String, Document> documents = new HashMap<>();
+
+    // 索引加载完成前收到的增量更新，加载完成后按顺序重放
+    private final List<Runnable> pendingUpdates = new ArrayList<>();
+
+    private volatile boolean ready = false;
+
+    private final AtomicLong queries = new AtomicLong();
+
+    /**
+     * 已索引的音乐
+     */
+    private static class Document {
+
+        final String id;
+
+        final String title;
+
+        final long createTime;
+
+        // 该文档的全部词项（含拼音），删除时使用
+        final Set<String> terms;
+
+        Document(String id, String title, long createTime, Set<String> terms) {
+            this.id = id;
+            this.title = title;
+            this.createTime = createTime;
+            this.terms = terms;
+        }
+    }
+
+    /**
+     * 应用启动完成后在后台加载索引，加载完成前查询回退到数据库
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        taskExecutor.execute(() -> {
+            long startTime = System.currentTimeMillis();
+            try {
+                List<Music> musics = musicMapper.selectList(Wrappers.lambdaQuery(Music.class)
+                        .select(Music::getId, Music::getTitle, Music::getSinger, Music::getAlbum, Music::getCreateTime));
+
+                lock.writeLock().lock();
+                try {
+                    for (Music music : musics) {
+                        doIndex(music);
+                    }
+                    for (Runnable update : pendingUpdates) {
+                        update.run();
+                    }
+                    pendingUpdates.clear();
+                    ready = true;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                log.info("音乐检索索引加载完成: {} 首音乐, {} 个词项, 耗时 {}ms",
+                        documents.size(), postings.size(), System.currentTimeMillis() - startTime);
+            } catch (Exception e) {
+                log.error("音乐检索索引加载失败，检索将使用数据库查询", e);
+            }
+        });
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 新增或更新索引（存在事务时在提交后执行）
+     */
+    public void index(Music music) {
+        if (music == null || music.getId() == null) {
+            return;
+        }
+        afterCommit(() -> doIndex(music));
+    }
+
+    /**
+     * 删除索引（存在事务时在提交后执行）
+     */
+    public void remove(String id) {
+        afterCommit(() -> doRemove(id));
+    }
+
+    /**
+     * 检索音乐
+     * 各条件之间为且的关系：keyword 匹配标题、歌手、专辑，title、singer 只匹配对应字段
+     * @return 按相关度从高到低排序的音乐id（相关度相同时新上传的在前）
+     */
+    public List<String> search(String keyword, String title, String singer) {
+        queries.incrementAndGet();
+        lock.readLock().lock();
+        try {
+            Map<String, Double> scores = intersect(null, keyword, ALL_FIELDS);
+            scores = intersect(scores, title, FIELD_TITLE);
+            scores = intersect(scores, singer, FIELD_SINGER);
+            if (scores == null || scores.isEmpty()) {
+                return Collections.emptyList();
+            }
+
+            String normalizedTitle = StringUtils.isNotBlank(title) ? title : keyword;
+            normalizedTitle = normalizedTitle == null ? null : SearchTokenizer.normalize(normalizedTitle.trim());
+
+            List<Map.Entry<String, Double>> ranked = new ArrayList<>(scores.size());
+            for (Map.Entry<String, Double> entry : scores.entrySet()) {
+                Document document = documents.get(entry.getKey());
+                // 标题完全相同或以查询开头时加权
+                if (normalizedTitle != null && !normalizedTitle.isEmpty()) {
+                    if (document.title.equals(normalizedTitle)) {
+                        entry.setValue(entry.getValue() + 10);
+                    } else if (document.title.startsWith(normalizedTitle)) {
+                        entry.setValue(entry.getValue() + 5);
+                    }
+                }
+                ranked.add(entry);
+            }
+            ranked.sort((a, b) -> {
+                int compare = Double.compare(b.getValue(), a.getValue());
+                if (compare != 0) {
+                    return compare;
+                }
+                return Long.compare(documents.get(b.getKey()).createTime, documents.get(a.getKey()).createTime);
+            });
+
+            List<String> ids = new ArrayList<>(ranked.size());
+            for (Map.Entry<String, Double> entry : ranked) {
+                ids.add(entry.getKey());
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 索引统计信息
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            metrics.put("ready", ready);
+            metrics.put("documents", documents.size());
+            metrics.put("terms", postings.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        metrics.put("queries", queries.get());
+        return metrics;
+    }
+
+    /**
+     * 与一个条件的匹配结果求交集并累加相关度
+     * @param scores 之前条件的匹配结果，为 null 表示尚无条件
+     */
+    private Map<String, Double> intersect(Map<String, Double> scores, String text, int fields) {
+        if (StringUtils.isBlank(text)) {
+            return scores;
+        }
+        List<SearchTokenizer.QueryTerm> queryTerms = SearchTokenizer.tokenizeForQuery(text);
+        if (queryTerms.isEmpty()) {
+            // 条件中没有可检索的字符
+            return new HashMap<>();
+        }
+
+        Map<String, Double> result = scores;
+        for (SearchTokenizer.QueryTerm queryTerm : queryTerms) {
+            Map<String, Double> termScores = match(queryTerm, fields);
+            if (result == null) {
+                result = termScores;
+                continue;
+            }
+            Map<String, Double> merged = new HashMap<>();
+            for (Map.Entry<String, Double> entry : result.entrySet()) {
+                Double termScore = termScores.get(entry.getKey());
+                if (termScore != null) {
+                    merged.put(entry.getKey(), entry.getValue() + termScore);
+                }
+            }
+            result = merged;
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 单个查询词的匹配结果：前缀匹配时取所有以该词开头的词项（完全相同的词项得分更高）
+     */
+    private Map<String, Double> match(SearchTokenizer.QueryTerm queryTerm, int fields) {
+        Map<String, Double> termScores = new HashMap<>();
+        Map<String, Map<String, Integer>> matched = queryTerm.prefix
+                ? postings.subMap(queryTerm.term, true, queryTerm.term + Character.MAX_VALUE, true)
+                : postings.subMap(queryTerm.term, true, queryTerm.term, true);
+        for (Map.Entry<String, Map<String, Integer>> posting : matched.entrySet()) {
+            double factor = posting.getKey().length() == queryTerm.term.length() ? 1.0 : 0.6;
+            for (Map.Entry<String, Integer> entry : posting.getValue().entrySet()) {
+                double score = weight(entry.getValue(), fields) * factor;
+                if (score > 0) {
+                    termScores.merge(entry.getKey(), score, Math::max);
+                }
+            }
+        }
+        return termScores;
+    }
+
+    /**
+     * 字段权重：标题 3、歌手 2、专辑 1，拼音首字母命中按一半计算
+     */
+    private static double weight(int mask, int fields) {
+        int original = mask & fields;
+        int pinyin = (mask >>> PINYIN_SHIFT) & fields;
+        return fieldWeight(original) + fieldWeight(pinyin) * 0.5;
+    }
+
+    private static double fieldWeight(int mask) {
+        double weight = 0;
+        if ((mask & FIELD_TITLE) != 0) {
+            weight += 3;
+        }
+        if ((mask & FIELD_SINGER) != 0) {
+            weight += 2;
+        }
+        if ((mask & FIELD_ALBUM) != 0) {
+            weight += 1;
+        }
+        return weight;
+    }
+
+    private void afterCommit(Runnable update) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(update);
+                }
+            });
+        } else {
+            apply(update);
+        }
+    }
+
+    private void apply(Runnable update) {
+        lock.writeLock().lock();
+        try {
+            if (ready) {
+                update.run();
+            } else {
+                pendingUpdates.add(update);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 调用方需持有写锁
+     */
+    private void doIndex(Music music) {
+        doRemove(music.getId());
+
+        Map<String, Integer> masks = new HashMap<>();
+        addField(masks, music.getTitle(), FIELD_TITLE);
+        addField(masks, music.getSinger(), FIELD_SINGER);
+        addField(masks, music.getAlbum(), FIELD_ALBUM);
+
+        for (Map.Entry<String, Integer> entry : masks.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), key -> new HashMap<>()).put(music.getId(), entry.getValue());
+        }
+        String title = music.getTitle() == null ? "" : SearchTokenizer.normalize(music.getTitle());
+        long createTime = music.getCreateTime() == null ? System.currentTimeMillis() : music.getCreateTime().getTime();
+        documents.put(music.getId(), new Document(music.getId(), title, createTime, new HashSet<>(masks.keySet())));
+    }
+
+    private static void addField(Map<String, Integer> masks, String text, int field) {
+        if (StringUtils.isBlank(text)) {
+            return;
+        }
+        Set<String> terms = new HashSet<>();
+        Set<String> pinyinTerms = new HashSet<>();
+        SearchTokenizer.tokenizeForIndex(text, terms, pinyinTerms);
+        for (String term : terms) {
+            masks.merge(term, field, (a, b) -> a | b);
+        }
+        for (String term : pinyinTerms) {
+            masks.merge(term, field << PINYIN_SHIFT, (a, b) -> a | b);
+        }
+    }
+
+    /**
+     * 调用方需持有写锁
+     */
+    private void doRemove(String id) {
+        Document document = documents.remove(id);
+        if (document == null) {
+            return;
+        }
+        for (String term : document.terms) {
+            Map<String, Integer> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(id);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package org.xioamila.common.search;
+
+import java.nio.charset.Charset;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 搜索分词
+ * 中日韩文字按单字和相邻双字切分；字母和数字按连续片段切分为词（查询时按前缀匹配）；
+ * 汉字额外生成拼音首字母词（基于 GB2312 一级汉字按拼音排序的区位码，覆盖常用字）
+ */
+final class SearchTokenizer {
+
+    // GB2312 一级汉字各拼音首字母的起始区位码，最后一项为一级汉字结束位置
+    private static final int[] PINYIN_BOUNDARIES = {
+            1601, 1637, 1833, 2078, 2274, 2302, 2433, 2594, 2787, 3106, 3212, 3472,
+            3635, 3722, 3730, 3858, 4027, 4086, 4390, 4558, 4684, 4925, 5249, 5590};
+
+    private static final char[] PINYIN_INITIALS = {
+            'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'j', 'k', 'l', 'm',
+            'n', 'o', 'p', 'q', 'r', 's', 't', 'w', 'x', 'y', 'z'};
+
+    private static final Charset GB2312 = Charset.forName("GB2312");
+
+    private SearchTokenizer() {
+    }
+
+    /**
+     * 查询词
+     */
+    static class QueryTerm {
+
+        final String term;
+
+        // 是否按前缀匹配（字母数字词）
+        final boolean prefix;
+
+        QueryTerm(String term, boolean prefix) {
+            this.term = term;
+            this.prefix = prefix;
+        }
+    }
+
+    /**
+     * 统一全角/半角与大小写
+     */
+    static String normalize(String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 索引分词：返回原文词项和拼音首字母词项
+     * @param terms 原文词项（输出）
+     * @param pinyinTerms 拼音首字母词项（输出）
+     */
+    static void tokenizeForIndex(String text, Set<String> terms, Set<String> pinyinTerms) {
+        for (String run : splitRuns(normalize(text))) {
+            if (!isCjk(run.charAt(0))) {
+                terms.add(run);
+                continue;
+            }
+            for (int i = 0; i < run.length(); i++) {
+                terms.add(run.substring(i, i + 1));
+                if (i + 1 < run.length()) {
+                    terms.add(run.substring(i, i + 2));
+                }
+            }
+            // 拼音首字母：以每个汉字开头的后缀都建立词项，使 "jl" 也能匹配 "周杰伦"
+            String initials = toPinyinInitials(run);
+            for (int i = 0; i < initials.length(); i++) {
+                pinyinTerms.add(initials.substring(i));
+            }
+        }
+    }
+
+    /**
+     * 查询分词：中日韩文字片段长度大于 1 时使用双字词（需全部命中），否则使用单字；字母数字词按前缀匹配
+     */
+    static List<QueryTerm> tokenizeForQuery(String text) {
+        Set<String> exact = new LinkedHashSet<>();
+        Set<String> prefixes = new LinkedHashSet<>();
+        for (String run : splitRuns(normalize(text))) {
+            if (!isCjk(run.charAt(0))) {
+                prefixes.add(run);
+            } else if (run.length() == 1) {
+                exact.add(run);
+            } else {
+                for (int i = 0; i + 1 < run.length(); i++) {
+                    exact.add(run.substring(i, i + 2));
+                }
+            }
+        }
+
+        List<QueryTerm> queryTerms = new ArrayList<>(exact.size() + prefixes.size());
+        for (String term : exact) {
+            queryTerms.add(new QueryTerm(term, false));
+        }
+        for (String term : prefixes) {
+            queryTerms.add(new QueryTerm(term, true));
+        }
+        return queryTerms;
+    }
+
+    /**
+     * 按字符类别切分为连续片段：中日韩文字片段、字母数字片段，其余字符作为分隔符
+     */
+    private static List<String> splitRuns(String text) {
+        List<String> runs = new ArrayList<>();
+        int start = -1;
+        boolean cjkRun = false;
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            boolean cjk = isCjk(c);
+            boolean word = cjk || Character.isLetterOrDigit(c);
+            if (start >= 0 && (!word || cjk != cjkRun)) {
+                runs.add(text.substring(start, i));
+                start = -1;
+            }
+            if (word && start < 0) {
+                start = i;
+                cjkRun = cjk;
+            }
+        }
+        return runs;
+    }
+
+    private static boolean isCjk(char c) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+
+    /**
+     * 汉字片段的拼音首字母，遇到无法识别的字（非一级汉字）时截止
+     */
+    private static String toPinyinInitials(String run) {
+        StringBuilder initials = new StringBuilder(run.length());
+        for (int i = 0; i < run.length(); i++) {
+            char initial = toPinyinInitial(run.charAt(i));
+            if (initial == 0) {
+                break;
+            }
+            initials.append(initial);
+        }
+        return initials.toString();
+    }
+
+    private static char toPinyinInitial(char c) {
+        byte[] bytes = String.valueOf(c).getBytes(GB2312);
+        if (bytes.length != 2) {
+            return 0;
+        }
+        int code = ((bytes[0] & 0xFF) - 160) * 100 + ((bytes[1] & 0xFF) - 160);
+        for (int i = 0; i < PINYIN_INITIALS.length; i++) {
+            if (code >= PINYIN_BOUNDARIES[i] && code < PINYIN_BOUNDARIES[i + 1]) {
+                return PINYIN_INITIALS[i];
+            }
+        }
+        return 0;
+    }
+}
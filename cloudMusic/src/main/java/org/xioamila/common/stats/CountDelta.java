@@ -0,0 +1,18 @@
+package org.xioamila.common.stats;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 一首音乐在一个统计周期内新增的播放、下载次数
+ */
+@Getter
+@AllArgsConstructor
+public class CountDelta {
+
+    private final String id;
+
+    private final long plays;
+
+    private final long downloads;
+}
@@ -0,0 +1,297 @@
+package org.xioamila.common.stats;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 热门排行榜（今日、本周）
+ * 播放、下载事件按小时分桶累加；定时合并最近 24 / 168 个小时桶，用小顶堆选出前 K 名并替换为不可变列表，
+ * 查询直接返回该列表（O(K)）；小时桶定期快照到磁盘，重启后恢复
+ */
+@Slf4j
+@Component
+public class MusicCharts {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private static final int DAY_HOURS = 24;
+
+    private static final int WEEK_HOURS = 24 * 7;
+
+    // 每个榜单保留的最大名次（多保留一些，过滤已删除的音乐后仍能返回足够的数量）
+    public static final int MAX_SIZE = 100;
+
+    private static final int RETAINED_SIZE = MAX_SIZE * 2;
+
+    // 下载比播放体现更强的偏好
+    private static final long DOWNLOAD_WEIGHT = 2;
+
+    /**
+     * 榜单周期
+     */
+    public enum Period {
+        DAY(DAY_HOURS), WEEK(WEEK_HOURS);
+
+        private final int hours;
+
+        Period(int hours) {
+            this.hours = hours;
+        }
+    }
+
+    /**
+     * 榜单中的一项
+     */
+    @Getter
+    public static class Entry {
+
+        private final String musicId;
+
+        private final long plays;
+
+        private final long downloads;
+
+        private final long score;
+
+        Entry(String musicId, long plays, long downloads) {
+            this.musicId = musicId;
+            this.plays = plays;
+            this.downloads = downloads;
+            this.score = plays + downloads * DOWNLOAD_WEIGHT;
+        }
+    }
+
+    /**
+     * 一个小时内的播放、下载次数
+     */
+    private static class Bucket {
+
+        final Map<String, LongAdder> plays = new ConcurrentHashMap<>();
+
+        final Map<String, LongAdder> downloads = new ConcurrentHashMap<>();
+    }
+
+    private final Path snapshotPath;
+
+    // 小时序号 -> 小时桶
+    private final ConcurrentSkipListMap<Long, Bucket> buckets = new ConcurrentSkipListMap<>();
+
+    private final Map<Period, List<Entry>> charts = new ConcurrentHashMap<>();
+
+    private volatile long refreshedAt;
+
+    public MusicCharts(@Value("${app.stats.charts.snapshot-path:data/charts.snapshot}") String snapshotPath) {
+        this.snapshotPath = Paths.get(System.getProperty("user.dir")).resolve(snapshotPath).toAbsolutePath().normalize();
+        for (Period period : Period.values()) {
+            charts.put(period, Collections.emptyList());
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        loadSnapshot();
+        refresh();
+    }
+
+    public void recordPlay(String musicId) {
+        currentBucket().plays.computeIfAbsent(musicId, k -> new LongAdder()).increment();
+    }
+
+    public void recordDownload(String musicId) {
+        currentBucket().downloads.computeIfAbsent(musicId, k -> new LongAdder()).increment();
+    }
+
+    /**
+     * 获取榜单（最近一次刷新的结果，按得分从高到低排序）
+     */
+    public List<Entry> getChart(Period period) {
+        return charts.get(period);
+    }
+
+    private Bucket currentBucket() {
+        return buckets.computeIfAbsent(System.currentTimeMillis() / HOUR, k -> new Bucket());
+    }
+
+    /**
+     * 定期重新计算榜单，并丢弃超出一周的小时桶
+     */
+    @Scheduled(fixedDelayString = "${app.stats.charts.refresh-interval:60000}")
+    public synchronized void refresh() {
+        long currentHour = System.currentTimeMillis() / HOUR;
+        buckets.headMap(currentHour - WEEK_HOURS + 1).clear();
+
+        for (Period period : Period.values()) {
+            ConcurrentNavigableMap<Long, Bucket> window = buckets.tailMap(currentHour - period.hours + 1);
+            Map<String, long[]> totals = new HashMap<>();
+            for (Bucket bucket : window.values()) {
+                for (Map.Entry<String, LongAdder> entry : bucket.plays.entrySet()) {
+                    totals.computeIfAbsent(entry.getKey(), k -> new long[2])[0] += entry.getValue().sum();
+                }
+                for (Map.Entry<String, LongAdder> entry : bucket.downloads.entrySet()) {
+                    totals.computeIfAbsent(entry.getKey(), k -> new long[2])[1] += entry.getValue().sum();
+                }
+            }
+            charts.put(period, topK(totals));
+        }
+        refreshedAt = System.currentTimeMillis();
+    }
+
+    private static List<Entry> topK(Map<String, long[]> totals) {
+        // 小顶堆保留得分最高的 RETAINED_SIZE 项
+        PriorityQueue<Entry> heap = new PriorityQueue<>(RETAINED_SIZE + 1, MusicCharts::compare);
+        for (Map.Entry<String, long[]> total : totals.entrySet()) {
+            Entry entry = new Entry(total.getKey(), total.getValue()[0], total.getValue()[1]);
+            if (heap.size() < RETAINED_SIZE) {
+                heap.add(entry);
+            } else if (compare(entry, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+        List<Entry> chart = new ArrayList<>(heap);
+        chart.sort((a, b) -> compare(b, a));
+        return Collections.unmodifiableList(chart);
+    }
+
+    /**
+     * 按得分、播放次数比较，相同时按音乐id保证顺序稳定
+     */
+    private static int compare(Entry a, Entry b) {
+        int result = Long.compare(a.score, b.score);
+        if (result == 0) {
+            result = Long.compare(a.plays, b.plays);
+        }
+        return result != 0 ? result : b.musicId.compareTo(a.musicId);
+    }
+
+    /**
+     * 定期保存小时桶快照
+     */
+    @Scheduled(fixedDelayString = "${app.stats.charts.snapshot-interval:300000}",
+            initialDelayString = "${app.stats.charts.snapshot-interval:300000}")
+    public void scheduledSnapshot() {
+        saveSnapshot();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        saveSnapshot();
+    }
+
+    /**
+     * 保存快照：每行为 小时序号、音乐id、播放次数、下载次数（以制表符分隔），先写临时文件再替换
+     */
+    private synchronized void saveSnapshot() {
+        try {
+            Files.createDirectories(snapshotPath.getParent());
+            Path tempFile = Files.createTempFile(snapshotPath.getParent(), "charts_", ".tmp");
+            try {
+                try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                    for (Map.Entry<Long, Bucket> bucket : buckets.entrySet()) {
+                        Map<String, long[]> counts = new HashMap<>();
+                        for (Map.Entry<String, LongAdder> entry : bucket.getValue().plays.entrySet()) {
+                            counts.computeIfAbsent(entry.getKey(), k -> new long[2])[0] = entry.getValue().sum();
+                        }
+                        for (Map.Entry<String, LongAdder> entry : bucket.getValue().downloads.entrySet()) {
+                            counts.computeIfAbsent(entry.getKey(), k -> new long[2])[1] = entry.getValue().sum();
+                        }
+                        for (Map.Entry<String, long[]> count : counts.entrySet()) {
+                            writer.write(bucket.getKey() + "\t" + count.getKey() + "\t"
+                                    + count.getValue()[0] + "\t" + count.getValue()[1]);
+                            writer.newLine();
+                        }
+                    }
+                }
+                try {
+                    Files.move(tempFile, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempFile, snapshotPath, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException e) {
+            log.warn("保存排行榜快照失败: {}", snapshotPath, e);
+        }
+    }
+
+    /**
+     * 加载快照，丢弃超出一周的小时桶和无法解析的行
+     */
+    private void loadSnapshot() {
+        if (!Files.isRegularFile(snapshotPath)) {
+            return;
+        }
+        long oldestHour = System.currentTimeMillis() / HOUR - WEEK_HOURS + 1;
+        int loaded = 0;
+        try (BufferedReader reader = Files.newBufferedReader(snapshotPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length != 4) {
+                    continue;
+                }
+                try {
+                    long hour = Long.parseLong(fields[0]);
+                    if (hour < oldestHour) {
+                        continue;
+                    }
+                    Bucket bucket = buckets.computeIfAbsent(hour, k -> new Bucket());
+                    long plays = Long.parseLong(fields[2]);
+                    long downloads = Long.parseLong(fields[3]);
+                    if (plays > 0) {
+                        bucket.plays.computeIfAbsent(fields[1], k -> new LongAdder()).add(plays);
+                    }
+                    if (downloads > 0) {
+                        bucket.downloads.computeIfAbsent(fields[1], k -> new LongAdder()).add(downloads);
+                    }
+                    loaded++;
+                } catch (NumberFormatException e) {
+                    log.warn("忽略无效的排行榜快照记录: {}", line);
+                }
+            }
+            log.info("排行榜快照加载完成: {} 条记录, {} 个小时桶", loaded, buckets.size());
+        } catch (IOException e) {
+            log.warn("加载排行榜快照失败: {}", snapshotPath, e);
+        }
+    }
+
+    /**
+     * 统计信息
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("buckets", buckets.size());
+        metrics.put("dayEntries", charts.get(Period.DAY).size());
+        metrics.put("weekEntries", charts.get(Period.WEEK).size());
+        metrics.put("refreshedAt", refreshedAt);
+        return metrics;
+    }
+}
@@ -0,0 +1,221 @@
+package org.xioamila.common.stats;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.xioamila.common.context.UserContext;
+import org.xioamila.entity.User;
+import org.xioamila.mapper.MusicMapper;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 播放、下载次数统计
+ * 请求线程只在内存中累加（LongAdder），定时任务把累计的增量合并为一条批量 UPDATE 写入数据库，应用关闭时再写入一次；
+ * 一次播放会产生多个 Range 请求，只有从文件开头读取的请求计数，同一客户端短时间内重复请求同一首音乐只计一次
+ */
+@Slf4j
+@Component
+public class MusicCounter {
+
+    // 每条 UPDATE 语句最多包含的音乐数量
+    private static final int BATCH_SIZE = 500;
+
+    private final MusicMapper musicMapper;
+
+    private final Map<String, LongAdder> plays = new ConcurrentHashMap<>();
+
+    private final Map<String, LongAdder> downloads = new ConcurrentHashMap<>();
+
+    // 最近计数过的 客户端 + 类型 + 音乐id，窗口内的重复请求不再计数
+    private final Cache<String, Boolean> recent;
+
+    private final AtomicLong flushedPlays = new AtomicLong();
+
+    private final AtomicLong flushedDownloads = new AtomicLong();
+
+    private final AtomicLong statements = new AtomicLong();
+
+    private final AtomicLong flushFailures = new AtomicLong();
+
+    public MusicCounter(MusicMapper musicMapper,
+                        @Value("${app.stats.dedup-window:30000}") long dedupWindow) {
+        this.musicMapper = musicMapper;
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(dedupWindow, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * 记录一次播放（请求已成功响应后调用）
+     * @return 是否计数（续传、拖动进度和窗口内的重复请求不计数）
+     */
+    public boolean recordPlay(String id, HttpServletRequest request) {
+        return record(plays, "play", id, request);
+    }
+
+    /**
+     * 记录一次下载（请求已成功响应后调用）
+     * @return 是否计数（续传和窗口内的重复请求不计数）
+     */
+    public boolean recordDownload(String id, HttpServletRequest request) {
+        return record(downloads, "download", id, request);
+    }
+
+    /**
+     * 音乐删除后不再统计
+     */
+    public void forget(String id) {
+        plays.remove(id);
+        downloads.remove(id);
+    }
+
+    private boolean record(Map<String, LongAdder> counters, String type, String id, HttpServletRequest request) {
+        if (!HttpMethod.GET.matches(request.getMethod()) || !isFromStart(request)) {
+            return false;
+        }
+        String key = getClientKey(request) + ":" + type + ":" + id;
+        if (recent.asMap().putIfAbsent(key, Boolean.TRUE) != null) {
+            return false;
+        }
+        counters.computeIfAbsent(id, k -> new LongAdder()).increment();
+        return true;
+    }
+
+    /**
+     * 是否从文件开头读取（没有 Range，或第一个范围从 0 开始）；续传、拖动进度产生的请求不计数
+     */
+    private static boolean isFromStart(HttpServletRequest request) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || rangeHeader.trim().isEmpty()) {
+            return true;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            // 文件长度未知，按最大值计算起始位置（后缀范围 bytes=-N 不是从开头读取）
+            return !ranges.isEmpty() && ranges.get(0).getRangeStart(Long.MAX_VALUE) == 0;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static String getClientKey(HttpServletRequest request) {
+        User user = UserContext.getUser();
+        if (user != null && user.getId() != null) {
+            return "u" + user.getId();
+        }
+        return "a" + request.getRemoteAddr();
+    }
+
+    /**
+     * 定期把累计的增量写入数据库
+     */
+    @Scheduled(fixedDelayString = "${app.stats.flush-interval:10000}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    /**
+     * 应用关闭时写入尚未保存的增量
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * 写入累计的增量：读取后从累加器中减去已读取的值（期间新增的计数保留到下一次），写入失败时加回
+     */
+    public synchronized void flush() {
+        Set<String> ids = new HashSet<>(plays.keySet());
+        ids.addAll(downloads.keySet());
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        List<CountDelta> deltas = new ArrayList<>();
+        for (String id : ids) {
+            long playDelta = drain(plays.get(id));
+            long downloadDelta = drain(downloads.get(id));
+            if (playDelta != 0 || downloadDelta != 0) {
+                deltas.add(new CountDelta(id, playDelta, downloadDelta));
+            }
+        }
+
+        for (int from = 0; from < deltas.size(); from += BATCH_SIZE) {
+            List<CountDelta> batch = deltas.subList(from, Math.min(from + BATCH_SIZE, deltas.size()));
+            try {
+                musicMapper.incrementCounts(batch);
+                statements.incrementAndGet();
+                for (CountDelta delta : batch) {
+                    flushedPlays.addAndGet(delta.getPlays());
+                    flushedDownloads.addAndGet(delta.getDownloads());
+                }
+            } catch (Exception e) {
+                flushFailures.incrementAndGet();
+                log.error("写入播放、下载次数失败，下次重试: {} 首音乐", batch.size(), e);
+                for (CountDelta delta : batch) {
+                    restore(plays, delta.getId(), delta.getPlays());
+                    restore(downloads, delta.getId(), delta.getDownloads());
+                }
+            }
+        }
+    }
+
+    private static long drain(LongAdder adder) {
+        if (adder == null) {
+            return 0;
+        }
+        long value = adder.sum();
+        if (value != 0) {
+            adder.add(-value);
+        }
+        return value;
+    }
+
+    private static void restore(Map<String, LongAdder> counters, String id, long value) {
+        if (value != 0) {
+            counters.computeIfAbsent(id, k -> new LongAdder()).add(value);
+        }
+    }
+
+    /**
+     * 统计信息
+     */
+    public Map<String, Object> getMetrics() {
+        long pendingPlays = 0;
+        for (LongAdder adder : plays.values()) {
+            pendingPlays += adder.sum();
+        }
+        long pendingDownloads = 0;
+        for (LongAdder adder : downloads.values()) {
+            pendingDownloads += adder.sum();
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("pendingPlays", pendingPlays);
+        metrics.put("pendingDownloads", pendingDownloads);
+        metrics.put("flushedPlays", flushedPlays.get());
+        metrics.put("flushedDownloads", flushedDownloads.get());
+        metrics.put("statements", statements.get());
+        metrics.put("flushFailures", flushFailures.get());
+        return metrics;
+    }
+}
@@ -0,0 +1,463 @@
+package org.xioamila.common.storage;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.greatmap.modules.core.exception.ServiceException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.xioamila.common.utils.FileParseUtil;
+import org.xioamila.entity.Music;
+import org.xioamila.mapper.MusicMapper;
+
+import javax.annotation.PostConstruct;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * 封面存储（按内容寻址）
+ * 封面文件以内容摘要命名，相同图片只保存一份；以引用该封面的音乐记录数作为引用计数，没有引用时才删除文件
+ * 已保存但音乐记录尚未提交的封面会被固定，固定期间不删除（避免并发上传复用即将被删除的文件）
+ * 入库时在后台生成各尺寸的缩略图，缓存在封面目录的 thumbs/<尺寸>/ 下，与原图同名（统一为 JPEG）
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CoverStore {
+
+    // 缩略图目录（位于封面目录下）
+    private static final String THUMBNAIL_DIRECTORY = "thumbs";
+
+    private static final float THUMBNAIL_QUALITY = 0.85f;
+
+    // 封面文件名：内容摘要.扩展名
+    private static final Pattern CONTENT_ADDRESSED_NAME = Pattern.compile("[0-9a-f]{64}\\.[a-z]+");
+
+    @Value("${cover.file.path}")
+    private String coverFilePath;
+
+    // 缩略图边长（像素），按从小到大排列
+    @Value("${app.file.cover.thumbnail-sizes:64,256}")
+    private int[] thumbnailSizes;
+
+    private final MusicMapper musicMapper;
+
+    private final ThreadPoolTaskExecutor taskExecutor;
+
+    // 正在生成缩略图的封面
+    private final Set<String> pendingThumbnails = ConcurrentHashMap.newKeySet();
+
+    // 无法生成缩略图的封面（如 ImageIO 不支持的格式），直接使用原图
+    private final Set<String> unsupportedCovers = ConcurrentHashMap.newKeySet();
+
+    // 被固定的封面 -> 固定次数（固定与删除在同一个键上互斥执行）
+    private final Map<String, Integer> pins = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        Arrays.sort(thumbnailSizes);
+    }
+
+    /**
+     * 获取封面文件目录
+     */
+    public File getDirectory() {
+        // 获取项目根目录的绝对路径
+        String projectRoot = System.getProperty("user.dir");
+        return new File(new File(projectRoot, coverFilePath).getAbsolutePath());
+    }
+
+    /**
+     * 保存封面图片，并固定该封面（见 {@link #pin(String)}）
+     * @return 封面文件名（内容摘要.扩展名），没有封面或不是图片时返回 null
+     */
+    public String store(byte[] image) throws IOException {
+        if (image == null || image.length == 0) {
+            return null;
+        }
+        String mimeType = FileParseUtil.detectImageType(image);
+        if (mimeType == null) {
+            return null;
+        }
+
+        String coverFileName = FileParseUtil.calculateContentHash(image) + "." + getExtension(mimeType);
+        Path target = getDirectory().toPath().resolve(coverFileName);
+        // 先固定再检查文件：固定之后不会被删除，固定之前已删除的在下面重新写入
+        pin(coverFileName);
+        if (Files.exists(target)) {
+            // 相同内容的封面已存在
+            scheduleThumbnails(coverFileName);
+            return coverFileName;
+        }
+
+        // 先写临时文件再移动，避免并发读取到不完整的文件
+        Files.createDirectories(target.getParent());
+        Path tempFile = Files.createTempFile(target.getParent(), ".cover_", ".tmp");
+        try {
+            Files.write(tempFile, image);
+            try {
+                Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        scheduleThumbnails(coverFileName);
+        return coverFileName;
+    }
+
+    /**
+     * 固定封面，在音乐记录提交之前不删除
+     * 存在事务时在事务结束后自动解除；不在事务中时由调用方在保存音乐记录后调用 {@link #unpin(String)}
+     */
+    public void pin(String coverUrl) {
+        if (StringUtils.isBlank(coverUrl)) {
+            return;
+        }
+        pins.merge(coverUrl, 1, Integer::sum);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    unpin(coverUrl);
+                }
+            });
+        }
+    }
+
+    /**
+     * 解除一次固定
+     */
+    public void unpin(String coverUrl) {
+        if (StringUtils.isBlank(coverUrl)) {
+            return;
+        }
+        pins.computeIfPresent(coverUrl, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * 获取封面文件
+     */
+    public File resolve(String coverUrl) {
+        return new File(getDirectory(), coverUrl);
+    }
+
+    /**
+     * 获取指定尺寸的封面文件
+     * 使用不小于请求尺寸的最小缩略图；请求尺寸超过所有缩略图或缩略图尚未生成时返回原图（并在后台补生成）
+     * @param size 请求的边长（像素），为空或不大于 0 时返回原图
+     */
+    public File resolve(String coverUrl, Integer size) {
+        File original = resolve(coverUrl);
+        if (size == null || size <= 0) {
+            return original;
+        }
+        for (int thumbnailSize : thumbnailSizes) {
+            if (thumbnailSize >= size) {
+                File thumbnail = getThumbnailFile(coverUrl, thumbnailSize);
+                if (thumbnail.exists()) {
+                    return thumbnail;
+                }
+                // 历史封面或尚未生成完成
+                scheduleThumbnails(coverUrl);
+                return original;
+            }
+        }
+        return original;
+    }
+
+    /**
+     * 获取封面文件的MIME类型
+     * 按内容寻址的封面和缩略图的扩展名由图片实际格式决定；历史封面（UUID.jpg）读取文件头检测
+     */
+    public MediaType getContentType(File coverFile) {
+        String fileName = coverFile.getName();
+        if (!CONTENT_ADDRESSED_NAME.matcher(fileName).matches()) {
+            String mimeType = FileParseUtil.detectImageType(coverFile);
+            if (mimeType != null) {
+                return MediaType.parseMediaType(mimeType);
+            }
+        }
+        return MediaTypeFactory.getMediaType(fileName).orElse(MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+    /**
+     * 释放一条音乐对封面的引用，没有其他音乐引用时删除封面文件
+     * 存在事务时在事务结束后（在后台线程中重新统计引用）再删除，删除失败只记录日志；
+     * 不在事务中时立即删除，失败时抛出异常
+     * @param coverUrl 封面文件名
+     * @param excludeMusicId 正在删除的音乐id（不计入引用），为 null 时统计所有引用；事务结束后统计时不再需要
+     */
+    public void release(String coverUrl, String excludeMusicId) throws ServiceException {
+        if (StringUtils.isBlank(coverUrl)) {
+            return; // 没有文件路径，直接返回
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    scheduleRelease(coverUrl);
+                }
+            });
+            return;
+        }
+        deleteIfUnreferenced(coverUrl, excludeMusicId);
+    }
+
+    /**
+     * 在后台重新统计引用并删除（事务已结束，统计结果包含其他已提交的音乐记录；回滚时被删除的音乐仍计入引用）
+     */
+    private void scheduleRelease(String coverUrl) {
+        try {
+            taskExecutor.execute(() -> {
+                try {
+                    deleteIfUnreferenced(coverUrl, null);
+                } catch (RuntimeException e) {
+                    log.warn("删除音乐封面失败: {}", coverUrl, e);
+                }
+            });
+        } catch (RuntimeException e) {
+            // 线程池已满时保留文件，多余的封面不影响使用
+            log.warn("提交封面删除任务失败，保留文件: {}", coverUrl);
+        }
+    }
+
+    /**
+     * 没有音乐引用、也没有被固定时删除封面文件和缩略图
+     */
+    private void deleteIfUnreferenced(String coverUrl, String excludeMusicId) throws ServiceException {
+        LambdaQueryWrapper<Music> queryWrapper = Wrappers.lambdaQuery(Music.class).eq(Music::getCoverUrl, coverUrl);
+        if (excludeMusicId != null) {
+            queryWrapper.ne(Music::getId, excludeMusicId);
+        }
+        long references = musicMapper.selectCount(queryWrapper);
+        if (references > 0) {
+            log.info("音乐封面仍被 {} 首音乐引用，保留文件: {}", references, coverUrl);
+            return;
+        }
+
+        // 在该封面的键上执行，期间不能被固定；已被固定（音乐记录尚未提交）时保留
+        pins.compute(coverUrl, (key, count) -> {
+            if (count != null) {
+                log.info("音乐封面正在被新的音乐使用，保留文件: {}", coverUrl);
+                return count;
+            }
+            delete(coverUrl);
+            for (int thumbnailSize : thumbnailSizes) {
+                deleteThumbnail(getThumbnailFile(coverUrl, thumbnailSize));
+            }
+            unsupportedCovers.remove(coverUrl);
+            return null;
+        });
+    }
+
+    /**
+     * 删除音乐封面文件
+     */
+    private void delete(String coverUrl) throws ServiceException {
+        try {
+            // 获取封面目录的绝对基础路径
+            Path basePath = Paths.get(getDirectory().getAbsolutePath()).toAbsolutePath().normalize();
+
+            // 构建完整文件路径
+            Path fileFullPath = basePath.resolve(coverUrl).normalize();
+
+            // 路径安全检查
+            if (!fileFullPath.startsWith(basePath)) {
+                log.error("非法文件路径尝试: basePath={}, filePath={}", basePath, fileFullPath);
+                throw new ServiceException("非法文件路径: " + coverUrl);
+            }
+
+            // 检查文件是否存在且是普通文件
+            if (Files.exists(fileFullPath) && !Files.isRegularFile(fileFullPath)) {
+                throw new ServiceException("目标路径不是普通文件: " + coverUrl);
+            }
+
+            boolean deleted = Files.deleteIfExists(fileFullPath);
+            if (!deleted) {
+                log.warn("音乐封面文件不存在: {}", fileFullPath);
+            }
+            log.info("音乐封面文件删除成功: {}", fileFullPath);
+
+        } catch (IOException e) {
+            log.error("删除音乐封面文件失败: {}", coverUrl, e);
+            throw new ServiceException("删除音乐封面文件失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 在后台生成缺失的缩略图（同一封面同时只生成一次）
+     */
+    private void scheduleThumbnails(String coverUrl) {
+        if (unsupportedCovers.contains(coverUrl) || !pendingThumbnails.add(coverUrl)) {
+            return;
+        }
+        try {
+            taskExecutor.execute(() -> {
+                try {
+                    generateThumbnails(coverUrl);
+                } finally {
+                    pendingThumbnails.remove(coverUrl);
+                }
+            });
+        } catch (RuntimeException e) {
+            // 线程池已满时不生成，下次请求再尝试
+            pendingThumbnails.remove(coverUrl);
+            log.warn("提交缩略图任务失败: {}", coverUrl);
+        }
+    }
+
+    /**
+     * 生成缺失的缩略图，不放大小于目标尺寸的图片
+     */
+    private void generateThumbnails(String coverUrl) {
+        File original = resolve(coverUrl);
+        BufferedImage image = null;
+        for (int thumbnailSize : thumbnailSizes) {
+            File thumbnail = getThumbnailFile(coverUrl, thumbnailSize);
+            if (thumbnail.exists()) {
+                continue;
+            }
+            try {
+                if (image == null) {
+                    image = original.exists() ? ImageIO.read(original) : null;
+                    if (image == null) {
+                        unsupportedCovers.add(coverUrl);
+                        log.warn("无法读取封面图片，不生成缩略图: {}", coverUrl);
+                        return;
+                    }
+                }
+                writeThumbnail(scale(image, thumbnailSize), thumbnail);
+            } catch (IOException | RuntimeException e) {
+                unsupportedCovers.add(coverUrl);
+                log.warn("生成封面缩略图失败: {}", coverUrl, e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 等比缩放到边长不超过 size，大幅缩小时逐级减半以保证画质；透明背景填充为白色
+     */
+    private static BufferedImage scale(BufferedImage source, int size) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double ratio = Math.min(1.0, (double) size / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(height * ratio));
+
+        BufferedImage current = source;
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage next = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, width, height);
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    /**
+     * 以 JPEG 格式写入缩略图（先写临时文件再移动）
+     */
+    private static void writeThumbnail(BufferedImage image, File target) throws IOException {
+        Path directory = target.getParentFile().toPath();
+        Files.createDirectories(directory);
+        Path tempFile = Files.createTempFile(directory, ".thumb_", ".tmp");
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try {
+            try (ImageOutputStream output = ImageIO.createImageOutputStream(tempFile.toFile())) {
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(THUMBNAIL_QUALITY);
+                writer.setOutput(output);
+                writer.write(null, new IIOImage(image, null, null), param);
+            }
+            try {
+                Files.move(tempFile, target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            writer.dispose();
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * 缩略图文件：thumbs/<尺寸>/<原图文件名去掉扩展名>.jpg
+     */
+    private File getThumbnailFile(String coverUrl, int size) {
+        int dot = coverUrl.lastIndexOf('.');
+        String baseName = dot > 0 ? coverUrl.substring(0, dot) : coverUrl;
+        return new File(new File(new File(getDirectory(), THUMBNAIL_DIRECTORY), String.valueOf(size)), baseName + ".jpg");
+    }
+
+    /**
+     * 删除缩略图（失败只记录日志，缩略图可重新生成）
+     */
+    private void deleteThumbnail(File thumbnail) {
+        try {
+            Files.deleteIfExists(thumbnail.toPath());
+        } catch (IOException e) {
+            log.warn("删除封面缩略图失败: {}", thumbnail.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * 根据图片MIME类型获取文件扩展名
+     */
+    private static String getExtension(String mimeType) {
+        switch (mimeType) {
+            case "image/jpeg":
+                return "jpg";
+            case "image/png":
+                return "png";
+            case "image/gif":
+                return "gif";
+            case "image/webp":
+                return "webp";
+            case "image/bmp":
+                return "bmp";
+            default:
+                return "img";
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package org.xioamila.common.storage;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.greatmap.modules.core.exception.ServiceException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.multipart.MultipartFile;
+import org.xioamila.common.utils.FileParseUtil;
+import org.xioamila.entity.Music;
+import org.xioamila.mapper.MusicMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 音乐文件入库流程（不写入音乐记录）
+ * 类型检测、元数据解析、内容摘要都只基于一份落盘文件完成，并负责音乐文件和封面文件的落地与失败清理
+ * 音乐文件按内容摘要去重，相同内容只保存一份并被多条音乐记录引用；与封面一样，音乐记录提交之前文件被固定，固定期间不删除
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MusicIngestor {
+
+    @Value("${music.file.path}")
+    private String musicFilePath;
+
+    private final ScratchSpace scratchSpace;
+
+    private final CoverStore coverStore;
+
+    private final MusicMapper musicMapper;
+
+    private final ThreadPoolTaskExecutor taskExecutor;
+
+    // 被固定的音乐文件 -> 固定次数（固定与删除在同一个键上互斥执行）
+    private final Map<String, Integer> pins = new ConcurrentHashMap<>();
+
+    /**
+     * 获取音乐文件目录
+     */
+    public File getMusicDirectory() {
+        // 获取项目根目录的绝对路径
+        String projectRoot = System.getProperty("user.dir");
+        return new File(new File(projectRoot, musicFilePath).getAbsolutePath());
+    }
+
+    /**
+     * 处理上传文件：先落到临时空间完成校验和解析，再移动到音乐目录
+     * 音乐文件以内容摘要命名，相同内容只保存一份；已存在相同内容时直接复用已有文件和元数据
+     * @param file 上传文件
+     * @param fileNameInfo 文件名解析结果（FileParseUtil.parseFileName）
+     * @return 待入库的音乐信息（音乐文件和封面已固定，不在事务中调用时保存后需调用 {@link #unpin(Music)}）
+     */
+    public Music ingestUpload(MultipartFile file, Map<String, Object> fileNameInfo) throws IOException {
+        String fileExtension = (String) fileNameInfo.get("fileExtension");
+
+        // 上传内容先落到受配额管理的临时空间（只写入一次），校验通过后再移动到音乐目录；失败时临时文件随 close 立即删除
+        try (ScratchSpace.ScratchFile scratchFile = scratchSpace.allocate("." + fileExtension, file.getSize())) {
+            file.transferTo(scratchFile.getFile());
+
+            String contentHash = FileParseUtil.calculateContentHash(scratchFile.getFile());
+            Music existing = findByContentHash(contentHash);
+            Music music;
+            if (existing != null) {
+                // 内容已存在：不再解析标签
+                log.info("上传内容已存在，复用音乐文件: {} -> {}", file.getOriginalFilename(), existing.getFilePath());
+                music = copyOf(existing, fileNameInfo, existing.getFilePath());
+            } else {
+                music = parse(scratchFile.getFile(), fileNameInfo, contentHash + "." + fileExtension, contentHash);
+            }
+            try {
+                // 文件已固定再检查：同名文件即相同内容，无需重复写入；固定之前已被删除的在这里重新写入
+                File saveFile = new File(getMusicDirectory(), music.getFilePath());
+                if (!saveFile.exists()) {
+                    scratchFile.moveTo(saveFile.toPath());
+                }
+            } catch (IOException e) {
+                // 事务中的固定在事务结束后自动解除
+                if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                    unpin(music);
+                }
+                discardCover(music);
+                throw e;
+            }
+            return music;
+        }
+    }
+
+    /**
+     * 解析音乐目录中已有的音频文件并生成音乐信息，同时保存封面
+     * @param audioFile 音频文件
+     * @param fileNameInfo 文件名解析结果（FileParseUtil.parseFileName）
+     * @param filePath 音乐文件在音乐目录中的相对路径
+     * @return 待入库的音乐信息（音乐文件和封面已固定，不在事务中调用时保存后需调用 {@link #unpin(Music)}）
+     */
+    public Music ingest(File audioFile, Map<String, Object> fileNameInfo, String filePath) throws IOException {
+        String contentHash = FileParseUtil.calculateContentHash(audioFile);
+        Music existing = findByContentHash(contentHash);
+        if (existing != null) {
+            // 内容已解析过，复用已有元数据
+            return copyOf(existing, fileNameInfo, filePath);
+        }
+        return parse(audioFile, fileNameInfo, filePath, contentHash);
+    }
+
+    /**
+     * 解析音频文件并生成音乐信息，同时保存封面；返回前固定音乐文件
+     */
+    private Music parse(File audioFile, Map<String, Object> fileNameInfo, String filePath, String contentHash) throws IOException {
+        // 验证文件类型
+        if (!FileParseUtil.isAudioFile(audioFile)) {
+            throw new ServiceException("文件不是有效的音频文件");
+        }
+
+        String fileExtension = (String) fileNameInfo.get("fileExtension");
+        String title = (String) fileNameInfo.get("title");
+        String singer = (String) fileNameInfo.get("singer");
+
+        // 解析文件信息
+        Map<String, Object> fileInfo = FileParseUtil.parseMusicFile(audioFile);
+        String formattedFileSize = (String) fileInfo.get("fileSize");
+        String duration = (String) fileInfo.get("duration");
+        String album = (String) fileInfo.get("album"); // 专辑名称
+        byte[] coverImage = (byte[]) fileInfo.get("coverImage"); // 封面图片数据
+
+        // 保存封面图片
+        String coverUrl = coverStore.store(coverImage);
+
+        Music music = new Music();
+        music.setTitle(title);
+        music.setSinger(singer);
+        music.setAlbum(album); // 设置专辑名称
+        music.setDuration(duration);
+        music.setFileType(fileExtension);
+        music.setFilePath(filePath);
+        music.setFileName(singer + " - " + title);
+        music.setFileSize(formattedFileSize);
+        music.setCoverUrl(coverUrl); // 设置封面路径
+        music.setContentHash(contentHash);
+        music.setPlayCount(0);
+        music.setDownloadCount(0);
+        pin(filePath);
+        return music;
+    }
+
+    /**
+     * 根据内容摘要查找已入库的音乐
+     */
+    private Music findByContentHash(String contentHash) {
+        List<Music> musics = musicMapper.selectList(Wrappers.lambdaQuery(Music.class)
+                .eq(Music::getContentHash, contentHash)
+                .last("LIMIT 1"));
+        return musics.isEmpty() ? null : musics.get(0);
+    }
+
+    /**
+     * 基于已有音乐的元数据生成新的音乐信息（标题、歌手取自本次的文件名），并固定音乐文件和封面
+     * @param filePath 新音乐使用的音乐文件（复用已有文件时即已有音乐的文件）
+     */
+    private Music copyOf(Music existing, Map<String, Object> fileNameInfo, String filePath) {
+        String title = (String) fileNameInfo.get("title");
+        String singer = (String) fileNameInfo.get("singer");
+
+        Music music = new Music();
+        music.setTitle(title);
+        music.setSinger(singer);
+        music.setAlbum(existing.getAlbum());
+        music.setDuration(existing.getDuration());
+        music.setFileType(existing.getFileType());
+        music.setFilePath(filePath);
+        music.setFileName(singer + " - " + title);
+        music.setFileSize(existing.getFileSize());
+        music.setCoverUrl(existing.getCoverUrl());
+        // 复用已有文件和封面，与新保存的一样在入库之前固定
+        pin(filePath);
+        coverStore.pin(existing.getCoverUrl());
+        music.setContentHash(existing.getContentHash());
+        music.setPlayCount(0);
+        music.setDownloadCount(0);
+        return music;
+    }
+
+    /**
+     * 固定音乐文件，在音乐记录提交之前不删除
+     * 存在事务时在事务结束后自动解除；不在事务中时由调用方在保存音乐记录后调用 {@link #unpin(Music)}
+     */
+    public void pin(String filePath) {
+        if (StringUtils.isBlank(filePath)) {
+            return;
+        }
+        pins.merge(filePath, 1, Integer::sum);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    unpin(filePath);
+                }
+            });
+        }
+    }
+
+    /**
+     * 解除一次固定
+     */
+    public void unpin(String filePath) {
+        if (StringUtils.isBlank(filePath)) {
+            return;
+        }
+        pins.computeIfPresent(filePath, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * 解除入库时对音乐文件和封面的固定（不在事务中入库时，保存或丢弃音乐记录前调用）
+     */
+    public void unpin(Music music) {
+        unpin(music.getFilePath());
+        coverStore.unpin(music.getCoverUrl());
+    }
+
+    /**
+     * 释放一条音乐对音乐文件的引用，没有其他音乐引用时删除音乐文件
+     * 存在事务时在事务结束后（在后台线程中重新统计引用）再删除，删除失败只记录日志；
+     * 不在事务中时立即删除，失败时抛出异常
+     * @param filePath 音乐文件在音乐目录中的相对路径
+     * @param excludeMusicId 正在删除的音乐id（不计入引用），为 null 时统计所有引用；事务结束后统计时不再需要
+     */
+    public void release(String filePath, String excludeMusicId) throws ServiceException {
+        if (StringUtils.isBlank(filePath)) {
+            return; // 没有文件路径，直接返回
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    scheduleRelease(filePath);
+                }
+            });
+            return;
+        }
+        deleteIfUnreferenced(filePath, excludeMusicId);
+    }
+
+    /**
+     * 在后台重新统计引用并删除（事务已结束，统计结果包含其他已提交的音乐记录；回滚时被删除的音乐仍计入引用）
+     */
+    private void scheduleRelease(String filePath) {
+        try {
+            taskExecutor.execute(() -> {
+                try {
+                    deleteIfUnreferenced(filePath, null);
+                } catch (RuntimeException e) {
+                    log.warn("删除音乐文件失败: {}", filePath, e);
+                }
+            });
+        } catch (RuntimeException e) {
+            // 线程池已满时保留文件，多余的文件不影响使用
+            log.warn("提交音乐文件删除任务失败，保留文件: {}", filePath);
+        }
+    }
+
+    /**
+     * 没有音乐引用、也没有被固定时删除音乐文件
+     */
+    private void deleteIfUnreferenced(String filePath, String excludeMusicId) throws ServiceException {
+        LambdaQueryWrapper<Music> queryWrapper = Wrappers.lambdaQuery(Music.class).eq(Music::getFilePath, filePath);
+        if (excludeMusicId != null) {
+            queryWrapper.ne(Music::getId, excludeMusicId);
+        }
+        long references = musicMapper.selectCount(queryWrapper);
+        if (references > 0) {
+            log.info("音乐文件仍被 {} 首音乐引用，保留文件: {}", references, filePath);
+            return;
+        }
+
+        // 在该文件的键上执行，期间不能被固定；已被固定（音乐记录尚未提交）时保留
+        pins.compute(filePath, (key, count) -> {
+            if (count != null) {
+                log.info("音乐文件正在被新的音乐使用，保留文件: {}", filePath);
+                return count;
+            }
+            delete(filePath);
+            return null;
+        });
+    }
+
+    /**
+     * 删除音乐文件
+     */
+    private void delete(String filePath) throws ServiceException {
+        try {
+            // 获取音乐目录的绝对基础路径
+            Path basePath = getMusicDirectory().toPath().toAbsolutePath().normalize();
+
+            // 构建完整文件路径
+            Path fileFullPath = basePath.resolve(filePath).normalize();
+
+            // 路径安全检查
+            if (!fileFullPath.startsWith(basePath)) {
+                log.error("非法文件路径尝试: basePath={}, filePath={}", basePath, fileFullPath);
+                throw new ServiceException("非法文件路径: " + filePath);
+            }
+
+            // 检查文件是否存在且是普通文件
+            if (Files.exists(fileFullPath) && !Files.isRegularFile(fileFullPath)) {
+                throw new ServiceException("目标路径不是普通文件: " + filePath);
+            }
+
+            boolean deleted = Files.deleteIfExists(fileFullPath);
+            if (!deleted) {
+                log.warn("音乐文件不存在: {}", fileFullPath);
+            }
+            log.info("音乐文件删除成功: {}", fileFullPath);
+
+        } catch (IOException e) {
+            log.error("删除音乐文件失败: {}", filePath, e);
+            throw new ServiceException("删除音乐文件失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 丢弃未能入库的音乐对应的音乐文件和封面文件（仍被其他音乐引用或被固定的文件保留）
+     * 存在事务时在事务结束后删除
+     */
+    public void discard(Music music) {
+        try {
+            release(music.getFilePath(), null);
+        } catch (ServiceException e) {
+            log.warn("清理入库失败文件失败: {}", music.getFilePath());
+        }
+        discardCover(music);
+    }
+
+    /**
+     * 丢弃未能入库的音乐对应的封面文件（仍被其他音乐引用的文件保留）
+     */
+    public void discardCover(Music music) {
+        try {
+            coverStore.release(music.getCoverUrl(), null);
+        } catch (ServiceException e) {
+            log.warn("清理入库失败封面失败: {}", music.getCoverUrl());
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.xioamila.common.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.File;
+import java.nio.file.Path;
+
+/**
+ * 已校验的文件：解析后的路径、大小、修改时间和MIME类型
+ * 大小和修改时间来自同一次属性读取，用于生成 ETag / Last-Modified 和 Content-Length
+ */
+@Getter
+@AllArgsConstructor
+public class ResolvedFile {
+
+    private final Path path;
+
+    private final long size;
+
+    private final long lastModified;
+
+    // 按文件内容检测的类型，无法检测时为 null
+    private final String mimeType;
+
+    public File getFile() {
+        return path.toFile();
+    }
+}
@@ -0,0 +1,114 @@
+package org.xioamila.common.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 已校验文件缓存
+ * 播放、下载、封面请求（一首歌会产生大量 Range 请求）不再每次拼接路径、检查文件并读取文件头检测类型：
+ * 命中时只读取一次文件属性，大小和修改时间未变化则直接使用缓存的路径和类型，变化时重新检测类型，文件不存在时移除
+ */
+@Slf4j
+@Component
+public class ResolvedFileCache {
+
+    private final Cache<String, ResolvedFile> cache;
+
+    // 文件大小或修改时间变化后重新检测的次数
+    private final AtomicLong revalidations = new AtomicLong();
+
+    public ResolvedFileCache(@Value("${app.cache.file.maximum-size:10000}") long maximumSize) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 获取已校验的文件
+     * @param key 缓存键（需包含文件类别，如 audio:音乐id）
+     * @param locator 缓存中没有时解析文件路径，返回 null 表示没有文件
+     * @param typeDetector 首次解析或文件变化后检测MIME类型
+     * @return 文件不存在或不是普通文件时返回 null
+     */
+    public ResolvedFile resolve(String key, Supplier<Path> locator, Function<Path, String> typeDetector) throws IOException {
+        ResolvedFile cached = cache.getIfPresent(key);
+        Path path = cached != null ? cached.getPath() : locator.get();
+        if (path == null) {
+            return null;
+        }
+
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            cache.invalidate(key);
+            return null;
+        }
+        if (!attributes.isRegularFile()) {
+            cache.invalidate(key);
+            return null;
+        }
+
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        if (cached != null && cached.getSize() == size && cached.getLastModified() == lastModified) {
+            return cached;
+        }
+        if (cached != null) {
+            revalidations.incrementAndGet();
+            log.info("文件已变化，重新检测: {}", path);
+        }
+
+        ResolvedFile resolved = new ResolvedFile(path, size, lastModified, typeDetector.apply(path));
+        cache.put(key, resolved);
+        return resolved;
+    }
+
+    /**
+     * 失效缓存：立即失效，存在事务时在结束后再失效一次，避免提交前被其他请求重新解析旧路径
+     */
+    public void invalidate(String key) {
+        cache.invalidate(key);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(key);
+                }
+            });
+        }
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public Map<String, Object> getMetrics() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("size", cache.estimatedSize());
+        metrics.put("hitCount", stats.hitCount());
+        metrics.put("missCount", stats.missCount());
+        metrics.put("hitRate", stats.hitRate());
+        metrics.put("evictionCount", stats.evictionCount());
+        metrics.put("revalidations", revalidations.get());
+        return metrics;
+    }
+}
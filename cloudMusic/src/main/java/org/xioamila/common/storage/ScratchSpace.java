@@ -0,0 +1,224 @@
+package org.xioamila.common.storage;
+
+import com.greatmap.modules.core.exception.ServiceException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.xioamila.common.config.ScratchProperties;
+
+import javax.annotation.PostConstruct;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 临时文件空间管理
+ * 负责临时文件的分配、及时删除、磁盘配额控制，并定期回收异常退出遗留的孤儿文件
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ScratchSpace {
+
+    private static final String FILE_PREFIX = "scratch_";
+
+    // 旧版本音频解析遗留在系统临时目录中的文件前缀
+    private static final String LEGACY_TEMP_PREFIX = "audio_temp_";
+
+    // 未配置临时文件目录时使用的音乐目录子目录（导入目录时跳过隐藏文件和子目录）
+    private static final String DEFAULT_DIRECTORY = ".scratch";
+
+    @Value("${music.file.path}")
+    private String musicFilePath;
+
+    private final ScratchProperties scratchProperties;
+
+    private Path directory;
+
+    // 当前使用中的临时文件
+    private final Set<Path> activeFiles = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong bytesInUse = new AtomicLong();
+
+    private final AtomicLong filesAllocated = new AtomicLong();
+
+    private final AtomicLong filesReclaimed = new AtomicLong();
+
+    private final AtomicLong bytesReclaimed = new AtomicLong();
+
+    private final AtomicLong quotaRejections = new AtomicLong();
+
+    @PostConstruct
+    public void init() throws IOException {
+        Path projectRoot = Paths.get(System.getProperty("user.dir"));
+        directory = (StringUtils.isBlank(scratchProperties.getPath())
+                ? new File(new File(projectRoot.toFile(), musicFilePath), DEFAULT_DIRECTORY).toPath()
+                : projectRoot.resolve(scratchProperties.getPath())).toAbsolutePath().normalize();
+        Files.createDirectories(directory);
+        log.info("临时文件目录: {}, 配额: {} 字节", directory, scratchProperties.getQuota());
+    }
+
+    /**
+     * 分配一个临时文件
+     * @param suffix 文件后缀（如 .flac，部分解析库依赖扩展名识别格式）
+     * @param expectedSize 预计写入的字节数，用于配额控制
+     * @return 临时文件，使用完毕后必须关闭（关闭即删除）
+     */
+    public ScratchFile allocate(String suffix, long expectedSize) throws IOException {
+        long reserved = Math.max(expectedSize, 0);
+        long inUse = bytesInUse.addAndGet(reserved);
+        if (inUse > scratchProperties.getQuota()) {
+            bytesInUse.addAndGet(-reserved);
+            quotaRejections.incrementAndGet();
+            log.warn("临时空间不足: 已使用 {} 字节, 申请 {} 字节, 配额 {} 字节",
+                    inUse - reserved, reserved, scratchProperties.getQuota());
+            throw new ServiceException("服务器临时空间不足，请稍后重试");
+        }
+
+        try {
+            Path path = Files.createTempFile(directory, FILE_PREFIX, suffix);
+            activeFiles.add(path);
+            filesAllocated.incrementAndGet();
+            return new ScratchFile(path, reserved);
+        } catch (IOException e) {
+            bytesInUse.addAndGet(-reserved);
+            throw e;
+        }
+    }
+
+    /**
+     * 定期回收孤儿文件（进程异常退出或未正确关闭而遗留的临时文件）
+     */
+    @Scheduled(fixedDelayString = "${app.file.scratch.sweep-interval:600000}")
+    public void sweep() {
+        long expireBefore = System.currentTimeMillis() - scratchProperties.getMaxAge();
+        sweepDirectory(directory, FILE_PREFIX, expireBefore);
+        sweepDirectory(Paths.get(System.getProperty("java.io.tmpdir")), LEGACY_TEMP_PREFIX, expireBefore);
+    }
+
+    private void sweepDirectory(Path dir, String prefix, long expireBefore) {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, prefix + "*")) {
+            for (Path path : stream) {
+                if (activeFiles.contains(path)) {
+                    continue;
+                }
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                    if (attributes.isRegularFile() && attributes.lastModifiedTime().toMillis() < expireBefore
+                            && Files.deleteIfExists(path)) {
+                        filesReclaimed.incrementAndGet();
+                        bytesReclaimed.addAndGet(attributes.size());
+                        log.info("回收孤儿临时文件: {} ({} 字节)", path, attributes.size());
+                    }
+                } catch (IOException e) {
+                    log.warn("回收临时文件失败: {}", path, e);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("扫描临时目录失败: {}", dir, e);
+        }
+    }
+
+    /**
+     * 临时空间统计信息
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("directory", directory.toString());
+        metrics.put("quotaBytes", scratchProperties.getQuota());
+        metrics.put("bytesInUse", bytesInUse.get());
+        metrics.put("filesInUse", activeFiles.size());
+        metrics.put("filesAllocated", filesAllocated.get());
+        metrics.put("filesReclaimed", filesReclaimed.get());
+        metrics.put("bytesReclaimed", bytesReclaimed.get());
+        metrics.put("quotaRejections", quotaRejections.get());
+        return metrics;
+    }
+
+    /**
+     * 临时文件句柄，关闭时删除文件并释放配额
+     */
+    public class ScratchFile implements Closeable {
+
+        private final Path path;
+
+        private final long reserved;
+
+        private boolean released = false;
+
+        private ScratchFile(Path path, long reserved) {
+            this.path = path;
+            this.reserved = reserved;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public File getFile() {
+            return path.toFile();
+        }
+
+        /**
+         * 将临时文件移动到最终位置（同一磁盘时为重命名），移动后临时文件不再占用配额
+         * 不在同一磁盘时先复制为目标目录中的临时文件再重命名，目标文件不会出现写入一半的状态
+         */
+        public void moveTo(Path target) throws IOException {
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(path, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                log.warn("临时文件目录与目标目录不在同一磁盘，改为复制: {} -> {}", path, target);
+                Path tempFile = Files.createTempFile(target.getParent(), ".move_", ".tmp");
+                try {
+                    Files.copy(path, tempFile, StandardCopyOption.REPLACE_EXISTING);
+                    Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(tempFile);
+                }
+                Files.deleteIfExists(path);
+            }
+            release();
+        }
+
+        @Override
+        public void close() {
+            if (released) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                // 删除失败的文件由清理任务回收
+                log.warn("删除临时文件失败: {}", path, e);
+            }
+            release();
+        }
+
+        private void release() {
+            if (!released) {
+                released = true;
+                activeFiles.remove(path);
+                bytesInUse.addAndGet(-reserved);
+            }
+        }
+    }
+}
@@ -10,21 +10,30 @@ import org.jaudiotagger.audio.exceptions.ReadOnlyFileException;
 import org.jaudiotagger.tag.FieldKey;
 import org.jaudiotagger.tag.TagException;
 import org.jaudiotagger.tag.datatype.Artwork;
-import org.springframework.core.io.AbstractResource;
 import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.*;
 import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.util.StringUtils;
-import org.springframework.web.multipart.MultipartFile;
+import org.xioamila.common.storage.ResolvedFile;
 import org.xioamila.entity.Music;
 
 import javax.servlet.http.HttpServletRequest;
 import java.io.*;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -38,14 +47,23 @@ public class FileParseUtil {
     private static final DecimalFormat df = new DecimalFormat("#.##");  // 定义 df 变量
     private static final Pattern INVALID_FILENAME_CHARS = Pattern.compile("[\\\\/:*?\"<>|]");
 
+    // Tomcat sendfile 请求属性（见 org.apache.coyote.Constants）
+    private static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_FILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+    // 小于该大小的区间直接走普通输出（与 Tomcat DefaultServlet 的默认阈值一致）
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+    // 计算内容摘要时的读取缓冲区大小
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
     /**
-     * 解析音乐文件信息
+     * 解析上传文件名信息（文件名：歌手 - 歌曲名称.文件扩展名）
      */
-    public static Map<String, Object> parseMusicFile(MultipartFile file) {
+    public static Map<String, Object> parseFileName(String originalFilename) {
         Map<String, Object> result = new HashMap<>();
 
-        // 获取文件扩展名、歌曲名称、歌手（文件名：歌手 - 歌曲名称.文件扩展名）
-        String originalFilename = file.getOriginalFilename();
+        // 获取文件扩展名、歌曲名称、歌手
         String fileExtension = "";
         String title = "";
         String singer = "";
@@ -80,56 +98,49 @@ public class FileParseUtil {
         result.put("title", title);
         result.put("singer", singer);
 
-        // 获取文件大小（字节）
-        long fileSizeBytes = file.getSize();
+        // 根据文件类型设置MIME类型
+        String mimeType = getMimeType(fileExtension);
+        result.put("mimeType", mimeType);
+
+        return result;
+    }
+
+    /**
+     * 解析已落盘的音乐文件信息（大小、时长、专辑、封面）
+     * 直接读取最终存储位置的文件，不再把上传内容复制到堆内存或临时文件
+     */
+    public static Map<String, Object> parseMusicFile(File file) {
+        Map<String, Object> result = new HashMap<>();
+
         // 获取格式化后的文件大小
-        String formattedFileSize = formatFileSize(fileSizeBytes);
-        result.put("fileSize", formattedFileSize);
+        result.put("fileSize", formatFileSize(file.length()));
 
-        // 解析文件时长
+        // 解析文件时长、专辑、封面
         Map<String, Object> audioMetadata = parseAudioMetadata(file);
         result.put("duration", audioMetadata.get("duration"));
         result.put("album", audioMetadata.get("album"));
         result.put("coverImage", audioMetadata.get("coverImage"));
 
-        // 根据文件类型设置MIME类型
-        String mimeType = getMimeType(fileExtension);
-        result.put("mimeType", mimeType);
-
         return result;
     }
 
     /**
      * 解析音频文件元数据（时长、专辑、封面等）
      */
-    private static Map<String, Object> parseAudioMetadata(MultipartFile file) {
+    private static Map<String, Object> parseAudioMetadata(File file) {
         Map<String, Object> metadata = new HashMap<>();
         metadata.put("duration", "未知时长");
         metadata.put("album", "未知专辑");
         metadata.put("coverImage", null);
 
         // 若文件为空，直接返回未知
-        if (file.isEmpty()) {
+        if (file.length() == 0) {
             return metadata;
         }
 
-        // 获取原始文件的扩展名（关键：用于临时文件命名）
-        String originalFilename = file.getOriginalFilename();
-        String fileExtension = "";
-        if (originalFilename != null && originalFilename.contains(".")) {
-            fileExtension = originalFilename.substring(originalFilename.lastIndexOf(".")); // 包含"."，如".flac"
-        }
-
-        File tempFile = null;
         try {
-            // 创建临时文件时，使用原始文件的扩展名（避免.tmp导致的格式识别失败）
-            tempFile = File.createTempFile("audio_temp_", fileExtension);
-            try (FileOutputStream fos = new FileOutputStream(tempFile)) {
-                fos.write(file.getBytes());
-            }
-
-            // 读取音频文件信息
-            AudioFile audioFile = AudioFileIO.read(tempFile);
+            // 读取音频文件信息（文件名保留了原始扩展名，避免格式识别失败）
+            AudioFile audioFile = AudioFileIO.read(file);
             // 获取时长（单位：秒）
             int durationSeconds = audioFile.getAudioHeader().getTrackLength();
 
@@ -151,28 +162,81 @@ public class FileParseUtil {
                 if (coverImageData != null) {
                     metadata.put("coverImage", coverImageData);
                 }
-
-                // 如果文件名解析的歌手或标题为空，尝试从元数据获取
-                // 这里可以根据需要补充逻辑
             }
 
         } catch (CannotReadException e) {
-            // 打印详细错误信息（包含不支持的原因）
-            System.err.println("无法读取音频文件：" + e.getMessage());
-            e.printStackTrace(); // 输出完整堆栈，查看具体不支持的原因
+            log.warn("无法读取音频文件: {}, {}", file.getAbsolutePath(), e.getMessage());
         } catch (IOException | TagException | ReadOnlyFileException | InvalidAudioFrameException e) {
             // 其他异常（如IO错误、解析失败）
-            e.printStackTrace();
-        } finally {
-            // 清理临时文件
-            if (tempFile != null && tempFile.exists()) {
-                // 标记临时文件为删除（JVM退出时删除，避免占用磁盘）
-                tempFile.deleteOnExit();
-            }
+            log.warn("解析音频元数据失败: {}", file.getAbsolutePath(), e);
         }
         return metadata;
     }
 
+    /**
+     * 流式计算文件内容的 SHA-256 摘要（十六进制小写）
+     * 使用固定大小的直接缓冲区，内存占用与文件大小无关
+     */
+    public static String calculateContentHash(File file) throws IOException {
+        MessageDigest digest = newSha256Digest();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(HASH_BUFFER_SIZE);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * 计算字节数据的 SHA-256 摘要（十六进制小写）
+     */
+    public static String calculateContentHash(byte[] data) {
+        return toHex(newSha256Digest().digest(data));
+    }
+
+    private static MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * 检测图片数据的MIME类型
+     * @return 图片MIME类型，不是图片时返回 null
+     */
+    public static String detectImageType(byte[] data) {
+        String mimeType = tika.detect(data);
+        return mimeType != null && mimeType.startsWith("image/") ? mimeType : null;
+    }
+
+    /**
+     * 检测图片文件的MIME类型（只读取文件头）
+     * @return 图片MIME类型，不是图片或读取失败时返回 null
+     */
+    public static String detectImageType(File file) {
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+            String mimeType = tika.detect(inputStream);
+            return mimeType != null && mimeType.startsWith("image/") ? mimeType : null;
+        } catch (IOException e) {
+            log.warn("检测图片类型失败: {}", file.getAbsolutePath());
+            return null;
+        }
+    }
+
     /**
      * 提取封面图片
      */
@@ -254,19 +318,6 @@ public class FileParseUtil {
         }
     }
 
-    /**
-     * 验证文件是否为音频文件
-     */
-    public static boolean isAudioFile(MultipartFile file) {
-        try {
-            String fileType = tika.detect(file.getInputStream());
-            return fileType != null && fileType.startsWith("audio/");
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
-        }
-    }
-
     /**
      * 生成安全的文件名（格式：歌手-标题.文件类型）
      * @param title 歌曲标题
@@ -301,21 +352,13 @@ public class FileParseUtil {
 
     /**
      * 创建文件下载响应
-     * @param file 文件对象
+     * @param file 已校验的文件（包含按内容检测的MIME类型）
      * @param fileName 下载时显示的文件名
+     * @param request HTTP请求（用于判断是否可以使用 sendfile）
      * @return ResponseEntity<Resource> 下载响应
      */
-    public static ResponseEntity<Resource> createDownloadResponse(File file, String fileName) {
+    public static ResponseEntity<Resource> createDownloadResponse(ResolvedFile file, String fileName, HttpServletRequest request) {
         try {
-            // 验证文件是否存在且可读
-            if (!file.exists() || !file.canRead()) {
-                log.warn("文件不存在或不可读: {}", file.getAbsolutePath());
-                return ResponseEntity.notFound().build();
-            }
-
-            // 创建文件资源
-            FileSystemResource resource = new FileSystemResource(file);
-
             // 设置响应头
             HttpHeaders headers = new HttpHeaders();
             headers.add(HttpHeaders.CONTENT_DISPOSITION,
@@ -324,44 +367,28 @@ public class FileParseUtil {
             headers.add(HttpHeaders.PRAGMA, "no-cache");
             headers.add(HttpHeaders.EXPIRES, "0");
 
-            // 自动检测MIME类型
-            String mimeType = Files.probeContentType(file.toPath());
-            if (mimeType == null) {
-                mimeType = "application/octet-stream";
-            }
+            // 使用解析文件时检测的MIME类型
+            String mimeType = file.getMimeType() != null ? file.getMimeType() : "application/octet-stream";
 
-            log.info("文件下载: {} -> {} (MIME: {})", file.getAbsolutePath(), fileName, mimeType);
+            log.info("文件下载: {} -> {} (MIME: {})", file.getPath(), fileName, mimeType);
 
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .contentLength(file.length())
-                    .contentType(MediaType.parseMediaType(mimeType))
-                    .body(resource);
+            return createConditionalResponse(file, headers, mimeType, request);
 
         } catch (Exception e) {
-            log.error("创建下载响应失败: {}", file.getAbsolutePath(), e);
+            log.error("创建下载响应失败: {}", file.getPath(), e);
             return ResponseEntity.internalServerError().build();
         }
     }
 
     /**
      * 创建音乐播放响应
-     * @param file 音频文件对象
+     * @param file 已校验的音频文件
      * @param music 音乐信息（用于获取元数据）
      * @param request HTTP请求（用于处理Range请求）
      * @return ResponseEntity<Resource> 播放响应
      */
-    public static ResponseEntity<Resource> createPlayResponse(File file, Music music, HttpServletRequest request) {
+    public static ResponseEntity<Resource> createPlayResponse(ResolvedFile file, Music music, HttpServletRequest request) {
         try {
-            // 验证文件是否存在且可读
-            if (!file.exists() || !file.canRead()) {
-                log.warn("文件不存在或不可读: {}", file.getAbsolutePath());
-                return ResponseEntity.notFound().build();
-            }
-
-            // 创建文件资源
-            FileSystemResource resource = new FileSystemResource(file);
-
             // 设置响应头
             HttpHeaders headers = new HttpHeaders();
 
@@ -370,80 +397,167 @@ public class FileParseUtil {
             headers.add(HttpHeaders.CONTENT_DISPOSITION,
                     "inline; filename=\"" + URLEncoder.encode(fileName, StandardCharsets.UTF_8.toString()) + "\"");
 
-            // 支持断点续传
-            headers.add(HttpHeaders.ACCEPT_RANGES, "bytes");
-
             // 缓存控制 - 允许缓存以提高性能
             headers.add(HttpHeaders.CACHE_CONTROL, "public, max-age=3600");
-            headers.add(HttpHeaders.EXPIRES, String.valueOf(System.currentTimeMillis() + 3600000));
+            headers.setExpires(System.currentTimeMillis() + 3600000);
 
             // 获取音频文件的正确MIME类型
             String mimeType = getMimeType(music.getFileType());
 
-            // 处理Range请求（支持断点续传）
-            long fileLength = file.length();
-            String rangeHeader = request.getHeader(HttpHeaders.RANGE);
-
-            if (StringUtils.hasText(rangeHeader)) {
-                return handleRangeRequest(file, resource, headers, mimeType, fileLength, rangeHeader);
-            }
+            log.info("音乐播放: {} -> {} (MIME: {})", file.getPath(), fileName, mimeType);
 
-            log.info("音乐播放: {} -> {} (MIME: {}, Size: {})",
-                    file.getAbsolutePath(), fileName, mimeType, formatFileSize(fileLength));
-
-            // 完整文件响应
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .contentLength(fileLength)
-                    .contentType(MediaType.parseMediaType(mimeType))
-                    .body(resource);
+            return createConditionalResponse(file, headers, mimeType, request);
 
         } catch (Exception e) {
-            log.error("创建播放响应失败: {}", file.getAbsolutePath(), e);
+            log.error("创建播放响应失败: {}", file.getPath(), e);
             return ResponseEntity.internalServerError().build();
         }
     }
 
     /**
-     * 处理Range请求（断点续传）
+     * 创建图片响应（封面）
+     * @param file 已校验的图片文件
+     * @param mediaType 图片MIME类型
+     * @param request HTTP请求（用于处理条件请求）
+     * @return ResponseEntity<Resource> 图片响应
      */
-    private static ResponseEntity<Resource> handleRangeRequest(File file, FileSystemResource resource,
-                                                               HttpHeaders headers, String mimeType,
-                                                               long fileLength, String rangeHeader) {
+    public static ResponseEntity<Resource> createImageResponse(ResolvedFile file, MediaType mediaType, HttpServletRequest request) {
         try {
-            // 解析Range头
-            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
-            if (ranges.size() != 1) {
-                log.warn("不支持的多范围请求: {}", rangeHeader);
-                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).build();
+            HttpHeaders headers = new HttpHeaders();
+            headers.add(HttpHeaders.CACHE_CONTROL, "public, max-age=3600");
+            headers.setExpires(System.currentTimeMillis() + 3600000);
+            return createConditionalResponse(file, headers, mediaType.toString(), request);
+        } catch (Exception e) {
+            log.error("创建图片响应失败: {}", file.getPath(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * 构建支持条件请求的文件响应
+     * 以文件大小和修改时间生成强 ETag，并设置 Last-Modified：
+     * If-None-Match / If-Modified-Since 命中时返回 304（使用解析文件时读取的属性，不读取文件内容）；
+     * If-Range 与当前文件不一致（文件已变化）时忽略 Range，返回完整文件
+     */
+    private static ResponseEntity<Resource> createConditionalResponse(ResolvedFile resolvedFile, HttpHeaders headers,
+                                                                      String mimeType,
+                                                                      HttpServletRequest request) throws IOException {
+        File file = resolvedFile.getFile();
+        long fileLength = resolvedFile.getSize();
+        long lastModified = resolvedFile.getLastModified();
+        String eTag = "\"" + Long.toHexString(fileLength) + "-" + Long.toHexString(lastModified) + "\"";
+
+        headers.setETag(eTag);
+        headers.setLastModified(lastModified);
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (isNotModified(request, eTag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+        }
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (StringUtils.hasText(rangeHeader)) {
+            if (isRangeApplicable(request, eTag, lastModified)) {
+                return handleRangeRequest(file, headers, mimeType, fileLength, rangeHeader, request);
             }
+            log.info("If-Range 不匹配，返回完整文件: {}", file.getAbsolutePath());
+        }
 
-            HttpRange range = ranges.get(0);
-            long start = range.getRangeStart(fileLength);
-            long end = range.getRangeEnd(fileLength);
-            long rangeLength = end - start + 1;
+        return createFileResponse(HttpStatus.OK, headers, mimeType, file, fileLength, 0, fileLength, request);
+    }
+
+    /**
+     * 缓存是否仍然有效（If-None-Match 优先于 If-Modified-Since，只对 GET/HEAD 生效）
+     */
+    private static boolean isNotModified(HttpServletRequest request, String eTag, long lastModified) {
+        if (!HttpMethod.GET.matches(request.getMethod()) && !HttpMethod.HEAD.matches(request.getMethod())) {
+            return false;
+        }
+
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            // 弱比较
+            for (String candidate : ifNoneMatch.split(",")) {
+                candidate = candidate.trim();
+                if ("*".equals(candidate) || stripWeakPrefix(candidate).equals(eTag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        long ifModifiedSince = getDateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        // HTTP 日期精确到秒
+        return ifModifiedSince != -1 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * Range 是否适用（没有 If-Range，或 If-Range 与当前文件一致）
+     */
+    private static boolean isRangeApplicable(HttpServletRequest request, String eTag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (!StringUtils.hasText(ifRange)) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // 强比较，弱 ETag 永远不匹配
+            return ifRange.equals(eTag);
+        }
+        long ifRangeDate = getDateHeader(request, HttpHeaders.IF_RANGE);
+        return ifRangeDate != -1 && ifRangeDate / 1000 == lastModified / 1000;
+    }
+
+    private static String stripWeakPrefix(String eTag) {
+        return eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+    }
+
+    /**
+     * 读取日期请求头，格式错误时视为不存在
+     */
+    private static long getDateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 处理Range请求（断点续传）
+     */
+    private static ResponseEntity<Resource> handleRangeRequest(File file, HttpHeaders headers, String mimeType,
+                                                               long fileLength, String rangeHeader,
+                                                               HttpServletRequest request) throws IOException {
+        try {
+            // 解析Range头，并合并重叠或相邻的范围
+            List<long[]> ranges = coalesceRanges(HttpRange.parseRanges(rangeHeader), fileLength);
 
             // 验证范围有效性
-            if (start >= fileLength || end >= fileLength || start > end) {
-                log.warn("无效的范围请求: {}-{}/{}", start, end, fileLength);
+            if (ranges.isEmpty()) {
+                log.warn("无效的范围请求: {} (文件大小: {})", rangeHeader, fileLength);
                 headers.add(HttpHeaders.CONTENT_RANGE, "bytes */" + fileLength);
                 return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
                         .headers(headers)
                         .build();
             }
 
+            if (ranges.size() > 1) {
+                return handleMultiRangeRequest(file, headers, mimeType, fileLength, ranges);
+            }
+
+            long start = ranges.get(0)[0];
+            long end = ranges.get(0)[1];
+            long rangeLength = end - start + 1;
+
             // 设置范围响应头
             headers.add(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + fileLength);
-            headers.setContentLength(rangeLength);
 
             log.info("处理范围请求: {}-{}/{} ({}%)",
                     start, end, fileLength, (rangeLength * 100 / fileLength));
 
-            // 创建范围资源（需要自定义Resource实现来支持范围读取）
-            return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
-                    .headers(headers)
-                    .contentType(MediaType.parseMediaType(mimeType))
-                    .body(createRangeResource(file, start, rangeLength));
+            return createFileResponse(HttpStatus.PARTIAL_CONTENT, headers, mimeType, file, fileLength, start, rangeLength,
+                    request);
 
         } catch (IllegalArgumentException e) {
             log.warn("无效的Range头: {}", rangeHeader, e);
@@ -452,77 +566,120 @@ public class FileParseUtil {
     }
 
     /**
-     * 创建支持范围读取的资源
+     * 处理多范围请求，以 multipart/byteranges 格式返回
      */
-    private static Resource createRangeResource(File file, long start, long length) {
-        return new AbstractResource() {
-            @Override
-            public String getDescription() {
-                return "Range resource for file: " + file.getName();
-            }
-
-            @Override
-            public InputStream getInputStream() throws IOException {
-                RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
-                randomAccessFile.seek(start);
+    private static ResponseEntity<Resource> handleMultiRangeRequest(File file, HttpHeaders headers, String mimeType,
+                                                                    long fileLength, List<long[]> ranges) {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        MultipartRangeResource resource = new MultipartRangeResource(file, ranges, boundary, mimeType, fileLength);
+
+        log.info("处理多范围请求: {} 段, 响应大小: {}", ranges.size(), formatFileSize(resource.contentLength()));
+
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                .headers(headers)
+                .contentLength(resource.contentLength())
+                .contentType(MediaType.parseMediaType("multipart/byteranges; boundary=" + boundary))
+                .body(resource);
+    }
 
-                return new InputStream() {
-                    private long bytesRead = 0;
+    /**
+     * 将Range转换为 {start, end} 闭区间，丢弃无法满足的范围，并按起始位置合并重叠或相邻的范围
+     */
+    private static List<long[]> coalesceRanges(List<HttpRange> httpRanges, long fileLength) {
+        List<long[]> ranges = new ArrayList<>(httpRanges.size());
+        for (HttpRange httpRange : httpRanges) {
+            long start = httpRange.getRangeStart(fileLength);
+            long end = httpRange.getRangeEnd(fileLength);
+            if (start < fileLength && start <= end) {
+                ranges.add(new long[]{start, end});
+            }
+        }
+        if (ranges.size() < 2) {
+            return ranges;
+        }
 
-                    @Override
-                    public int read() throws IOException {
-                        if (bytesRead >= length) {
-                            return -1;
-                        }
-                        int result = randomAccessFile.read();
-                        if (result != -1) {
-                            bytesRead++;
-                        }
-                        return result;
-                    }
+        ranges.sort(Comparator.comparingLong(range -> range[0]));
+        List<long[]> merged = new ArrayList<>(ranges.size());
+        long[] current = ranges.get(0);
+        for (int i = 1; i < ranges.size(); i++) {
+            long[] next = ranges.get(i);
+            if (next[0] <= current[1] + 1) {
+                current[1] = Math.max(current[1], next[1]);
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
 
-                    @Override
-                    public int read(byte[] b, int off, int len) throws IOException {
-                        if (bytesRead >= length) {
-                            return -1;
-                        }
-                        int maxRead = (int) Math.min(len, length - bytesRead);
-                        int read = randomAccessFile.read(b, off, maxRead);
-                        if (read != -1) {
-                            bytesRead += read;
-                        }
-                        return read;
-                    }
+    /**
+     * 构建文件（片段）响应
+     * 容器支持 sendfile 时只设置响应头，由 Tomcat 在提交响应后通过 FileChannel.transferTo 直接把文件写入 socket，
+     * 数据不经过 JVM 堆；否则回退为基于 FileChannel 的片段资源
+     */
+    private static ResponseEntity<Resource> createFileResponse(HttpStatus status, HttpHeaders headers, String mimeType,
+                                                               File file, long fileLength, long start, long length,
+                                                               HttpServletRequest request) throws IOException {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(status)
+                .headers(headers)
+                .contentLength(length)
+                .contentType(MediaType.parseMediaType(mimeType));
+
+        if (trySendfile(request, file, start, length)) {
+            return builder.build();
+        }
 
-                    @Override
-                    public void close() throws IOException {
-                        randomAccessFile.close();
-                    }
-                };
-            }
+        Resource body;
+        if (start == 0 && length == fileLength) {
+            // 请求带有 Range 却返回完整文件时（If-Range 不匹配），Spring 会把普通 Resource 自动转换为片段响应，
+            // InputStreamResource 不参与该转换
+            body = StringUtils.hasText(request.getHeader(HttpHeaders.RANGE))
+                    ? new InputStreamResource(Files.newInputStream(file.toPath()))
+                    : new FileSystemResource(file);
+        } else {
+            body = new FileRegionResource(file, start, length);
+        }
+        return builder.body(body);
+    }
 
-            @Override
-            public long contentLength() {
-                return length;
-            }
+    /**
+     * 尝试交由容器以 sendfile 方式发送文件区间
+     * @return true 表示已设置 sendfile 属性，响应体必须为空
+     */
+    private static boolean trySendfile(HttpServletRequest request, File file, long start, long length) throws IOException {
+        if (request == null || length < SENDFILE_MIN_SIZE || !HttpMethod.GET.matches(request.getMethod())) {
+            return false;
+        }
+        if (!Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))) {
+            return false;
+        }
 
-            @Override
-            public String getFilename() {
-                return file.getName();
-            }
-        };
+        // 文件路径已在解析时校验，这里不再解析符号链接
+        request.setAttribute(SENDFILE_FILENAME_ATTR, file.getAbsolutePath());
+        request.setAttribute(SENDFILE_FILE_START_ATTR, start);
+        request.setAttribute(SENDFILE_FILE_END_ATTR, start + length);
+        return true;
     }
 
     /**
-     * 验证文件是否为音频文件（重载方法，支持File类型）
+     * 验证文件是否为音频文件（只读取文件头部进行类型检测）
      */
     public static boolean isAudioFile(File file) {
+        String fileType = detectFileType(file.toPath());
+        return fileType != null && fileType.startsWith("audio/");
+    }
+
+    /**
+     * 按文件内容检测MIME类型（只读取文件头部），检测失败时返回 null
+     */
+    public static String detectFileType(Path path) {
         try {
-            String fileType = tika.detect(file);
-            return fileType != null && fileType.startsWith("audio/");
+            return tika.detect(path);
         } catch (IOException e) {
-            log.error("检测文件类型失败: {}", file.getAbsolutePath(), e);
-            return false;
+            log.error("检测文件类型失败: {}", path, e);
+            return null;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+package org.xioamila.common.utils;
+
+import org.apache.commons.io.input.BoundedInputStream;
+import org.springframework.core.io.AbstractResource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 文件片段资源（文件中 [position, position + length) 的字节区间）
+ * 基于 FileChannel 定位读取，不逐字节拷贝，在无法使用 sendfile 时作为范围响应的回退实现
+ */
+public class FileRegionResource extends AbstractResource {
+
+    private final File file;
+
+    private final long position;
+
+    private final long length;
+
+    public FileRegionResource(File file, long position, long length) {
+        this.file = file;
+        this.position = position;
+        this.length = length;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            channel.position(position);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        // 关闭外层流时同时关闭 FileChannel
+        return new BoundedInputStream(Channels.newInputStream(channel), length);
+    }
+
+    @Override
+    public boolean exists() {
+        return file.exists();
+    }
+
+    @Override
+    public long contentLength() {
+        return length;
+    }
+
+    @Override
+    public String getFilename() {
+        return file.getName();
+    }
+
+    @Override
+    public String getDescription() {
+        return "File region [" + position + ", " + (position + length) + ") of " + file.getAbsolutePath();
+    }
+
+    public File getSourceFile() {
+        return file;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public long getLength() {
+        return length;
+    }
+}
@@ -0,0 +1,159 @@
+package org.xioamila.common.utils;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * multipart/byteranges 响应体
+ * 分段头预先编码，分段数据在读取时通过同一个 FileChannel 按位置读取，不在内存中拼装整个响应
+ */
+public class MultipartRangeResource extends AbstractResource {
+
+    private static final String CRLF = "\r\n";
+
+    private final File file;
+
+    // 每个元素为 {start, end}（闭区间），已排序且互不重叠
+    private final List<long[]> ranges;
+
+    private final List<byte[]> partHeaders = new ArrayList<>();
+
+    private final byte[] closeDelimiter;
+
+    private final long contentLength;
+
+    public MultipartRangeResource(File file, List<long[]> ranges, String boundary, String mimeType, long fileLength) {
+        this.file = file;
+        this.ranges = ranges;
+
+        long length = 0;
+        for (long[] range : ranges) {
+            byte[] header = (CRLF + "--" + boundary + CRLF
+                    + "Content-Type: " + mimeType + CRLF
+                    + "Content-Range: bytes " + range[0] + "-" + range[1] + "/" + fileLength + CRLF
+                    + CRLF).getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(header);
+            length += header.length + (range[1] - range[0] + 1);
+        }
+        this.closeDelimiter = (CRLF + "--" + boundary + "--").getBytes(StandardCharsets.US_ASCII);
+        this.contentLength = length + closeDelimiter.length;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return new PartsInputStream(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+    }
+
+    @Override
+    public boolean exists() {
+        return file.exists();
+    }
+
+    @Override
+    public long contentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public String getFilename() {
+        return file.getName();
+    }
+
+    @Override
+    public String getDescription() {
+        return "Multipart byte ranges (" + ranges.size() + " parts) of " + file.getAbsolutePath();
+    }
+
+    /**
+     * 依次输出：分段头、分段数据 ... 结束分隔符
+     */
+    private class PartsInputStream extends InputStream {
+
+        private final FileChannel channel;
+
+        // 当前分段序号，等于 ranges.size() 时输出结束分隔符
+        private int part = 0;
+
+        // 当前是否在输出分段头（否则在输出文件数据）
+        private boolean inHeader = true;
+
+        // 当前分段头或结束分隔符内的偏移
+        private int headerOffset = 0;
+
+        // 当前分段在文件中的读取位置
+        private long filePosition;
+
+        PartsInputStream(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int n = read(single, 0, 1);
+            return n == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (true) {
+                if (part == ranges.size()) {
+                    // 结束分隔符
+                    if (headerOffset >= closeDelimiter.length) {
+                        return -1;
+                    }
+                    return copyBytes(closeDelimiter, b, off, len);
+                }
+
+                if (inHeader) {
+                    byte[] header = partHeaders.get(part);
+                    if (headerOffset < header.length) {
+                        return copyBytes(header, b, off, len);
+                    }
+                    inHeader = false;
+                    headerOffset = 0;
+                    filePosition = ranges.get(part)[0];
+                }
+
+                long remaining = ranges.get(part)[1] + 1 - filePosition;
+                if (remaining > 0) {
+                    int toRead = (int) Math.min(len, remaining);
+                    int n = channel.read(ByteBuffer.wrap(b, off, toRead), filePosition);
+                    if (n == -1) {
+                        throw new IOException("文件在读取过程中被截断: " + file.getAbsolutePath());
+                    }
+                    filePosition += n;
+                    return n;
+                }
+
+                // 进入下一个分段
+                part++;
+                inHeader = true;
+            }
+        }
+
+        private int copyBytes(byte[] source, byte[] b, int off, int len) {
+            int n = Math.min(len, source.length - headerOffset);
+            System.arraycopy(source, headerOffset, b, off, n);
+            headerOffset += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
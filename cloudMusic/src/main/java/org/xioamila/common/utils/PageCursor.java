@@ -0,0 +1,51 @@
+package org.xioamila.common.utils;
+
+import com.greatmap.modules.core.exception.ServiceException;
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 游标分页的游标：上一页最后一条记录的排序键和id（排序键相同时以id区分）
+ * 对外编码为 URL 安全的 Base64 字符串，客户端不应解析其内容
+ */
+@Getter
+public class PageCursor {
+
+    private final long key;
+
+    private final String id;
+
+    public PageCursor(long key, String id) {
+        this.key = key;
+        this.id = id;
+    }
+
+    public String encode() {
+        String raw = key + ":" + (id == null ? "" : id);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标
+     * @return 游标为空时返回 null（第一页）
+     */
+    public static PageCursor decode(String cursor) {
+        if (StringUtils.isBlank(cursor)) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            if (separator <= 0) {
+                throw new ServiceException("无效的分页游标");
+            }
+            String id = raw.substring(separator + 1);
+            return new PageCursor(Long.parseLong(raw.substring(0, separator)), id.isEmpty() ? null : id);
+        } catch (IllegalArgumentException e) {
+            throw new ServiceException("无效的分页游标");
+        }
+    }
+}
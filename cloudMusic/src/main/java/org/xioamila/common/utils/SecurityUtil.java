@@ -1,6 +1,12 @@
 package org.xioamila.common.utils;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.SignatureAlgorithm;
@@ -14,15 +20,25 @@ import org.xioamila.entity.User;
 
 import javax.annotation.PostConstruct;
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class SecurityUtil {
 
     private static JwtProperties jwtProperties;
     private static SecretKey key;
+    // 解析器线程安全，初始化时构建一次
+    private static JwtParser parser;
+    // 已验证的 Token（以 Token 摘要为键），在 Token 过期时失效
+    private static Cache<String, VerifiedToken> verifiedTokens;
 
     @Autowired
     private JwtProperties tempJwtProperties;
@@ -37,6 +53,50 @@ public class SecurityUtil {
         jwtProperties = this.tempJwtProperties;
         // 初始化密钥
         key = Keys.hmacShaKeyFor(jwtProperties.getSecret().getBytes());
+        parser = Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build();
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(jwtProperties.getCacheSize())
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String digest, VerifiedToken token, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(token.expireAt - System.currentTimeMillis(), 0));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String digest, VerifiedToken token, long currentTime, long currentDuration) {
+                        return expireAfterCreate(digest, token, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String digest, VerifiedToken token, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 已验证的 Token：用户信息和过期时间
+     */
+    private static class VerifiedToken {
+
+        final String userId;
+
+        final String username;
+
+        final String nickname;
+
+        final long expireAt;
+
+        VerifiedToken(String userId, String username, String nickname, long expireAt) {
+            this.userId = userId;
+            this.username = username;
+            this.nickname = nickname;
+            this.expireAt = expireAt;
+        }
     }
 
     public SecurityUtil() {
@@ -88,27 +148,102 @@ public class SecurityUtil {
             throw new IllegalStateException("JWT密钥未初始化，请检查配置");
         }
 
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return parser.parseClaimsJws(token).getBody();
     }
 
     /**
      * 从Token创建User对象
      */
     public static User createUserFromToken(String token) {
-        Map<String, Object> claims = parseJWT(token);
+        return verifyToken(token);
+    }
 
-        User user = new User();
-        user.setId(String.valueOf(claims.get(USERID).toString()));
-        user.setUsername(claims.get(USERNAME).toString());
-        user.setNickname(claims.get(NICKNAME).toString());
+    /**
+     * Token 是否已验证并缓存（未过期）
+     * @param digest Token 摘要（见 {@link #tokenDigest(String)}）
+     */
+    public static boolean isTokenCached(String digest) {
+        return verifiedTokens != null && verifiedTokens.getIfPresent(digest) != null;
+    }
+
+    /**
+     * 验证Token并创建User对象
+     * 同一个 Token 只验证一次签名，之后直到过期都从缓存读取（一次播放会产生大量带 Token 的 Range 请求）
+     */
+    public static User verifyToken(String token) {
+        return verifyToken(token, tokenDigest(token));
+    }
 
+    /**
+     * 验证Token并创建User对象
+     * @param digest 调用方已计算的 Token 摘要（见 {@link #tokenDigest(String)}）
+     */
+    public static User verifyToken(String token, String digest) {
+        if (verifiedTokens == null) {
+            throw new IllegalStateException("JWT密钥未初始化，请检查配置");
+        }
+
+        VerifiedToken verified = verifiedTokens.getIfPresent(digest);
+        if (verified == null) {
+            Claims claims;
+            try {
+                claims = parser.parseClaimsJws(token).getBody();
+            } catch (ExpiredJwtException e) {
+                throw new RuntimeException("Token已过期", e);
+            } catch (MalformedJwtException e) {
+                throw new RuntimeException("Token格式错误", e);
+            } catch (SignatureException e) {
+                throw new RuntimeException("Token签名验证失败", e);
+            } catch (Exception e) {
+                throw new RuntimeException("Token验证失败", e);
+            }
+
+            Date expiration = claims.getExpiration();
+            long expireAt = expiration != null
+                    ? expiration.getTime()
+                    : System.currentTimeMillis() + jwtProperties.getExpiration();
+            verified = new VerifiedToken(claims.get(USERID).toString(), claims.get(USERNAME).toString(),
+                    claims.get(NICKNAME).toString(), expireAt);
+            verifiedTokens.put(digest, verified);
+        }
+
+        // 每个请求使用独立的 User 对象
+        User user = new User();
+        user.setId(verified.userId);
+        user.setUsername(verified.username);
+        user.setNickname(verified.nickname);
         return user;
     }
 
+    /**
+     * Token 摘要（缓存中不保存 Token 原文）
+     */
+    public static String tokenDigest(String token) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(messageDigest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 算法不可用", e);
+        }
+    }
+
+    /**
+     * Token 验证缓存统计信息
+     */
+    public static Map<String, Object> getTokenCacheMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        if (verifiedTokens == null) {
+            return metrics;
+        }
+        CacheStats stats = verifiedTokens.stats();
+        metrics.put("size", verifiedTokens.estimatedSize());
+        metrics.put("hitCount", stats.hitCount());
+        metrics.put("missCount", stats.missCount());
+        metrics.put("hitRate", stats.hitRate());
+        metrics.put("evictionCount", stats.evictionCount());
+        return metrics;
+    }
+
     /**
      * 获取当前用户ID（无需参数）
      */
@@ -144,17 +279,7 @@ public class SecurityUtil {
      * 验证Token是否有效
      */
     public static void validateToken(String token) {
-        try {
-            parseJWT(token);
-        } catch (ExpiredJwtException e) {
-            throw new RuntimeException("Token已过期", e);
-        } catch (MalformedJwtException e) {
-            throw new RuntimeException("Token格式错误", e);
-        } catch (SignatureException e) {
-            throw new RuntimeException("Token签名验证失败", e);
-        } catch (Exception e) {
-            throw new RuntimeException("Token验证失败", e);
-        }
+        verifyToken(token);
     }
 
     /**
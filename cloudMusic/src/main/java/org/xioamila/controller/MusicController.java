@@ -14,10 +14,15 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.xioamila.entity.Music;
+import org.xioamila.service.MusicImportService;
 import org.xioamila.service.MusicService;
+import org.xioamila.vo.ChartVo;
+import org.xioamila.vo.CursorPage;
+import org.xioamila.vo.ImportJobVo;
 import org.xioamila.vo.Result;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.List;
 
 @Slf4j
 @RestController
@@ -28,6 +33,8 @@ public class MusicController {
 
     private MusicService musicService;
 
+    private MusicImportService musicImportService;
+
     @Operation(summary = "音乐列表查询")
     @GetMapping("/getPageList")
     @Parameters({
@@ -35,13 +42,28 @@ public class MusicController {
             @Parameter(name = "singer", description = "歌手", in = ParameterIn.QUERY, schema = @Schema(type = "string"))
     })
     public Result<Page<Music>> getPageList(@Parameter(hidden = true) Music music,
+                                            @Parameter(description = "关键字（标题、歌手、专辑，支持拼音首字母）") @RequestParam(required = false) String keyword,
                                             @Parameter(description = "当前页数") @RequestParam(defaultValue = "1") Integer nCurrent,
                                             @Parameter(description = "每页数量") @RequestParam(defaultValue = "10") Integer nSize) {
 
-        Page<Music> musicList = musicService.getPageList(new Page<>(nCurrent, nSize), music);
+        Page<Music> musicList = musicService.getPageList(new Page<>(nCurrent, nSize), music, keyword);
         return Result.data(musicList);
     }
 
+    @Operation(summary = "音乐列表查询（游标分页）")
+    @GetMapping("/listByCursor")
+    @Parameters({
+            @Parameter(name = "title", description = "歌曲标题", in = ParameterIn.QUERY, schema = @Schema(type = "string")),
+            @Parameter(name = "singer", description = "歌手", in = ParameterIn.QUERY, schema = @Schema(type = "string"))
+    })
+    public Result<CursorPage<Music>> listByCursor(@Parameter(hidden = true) Music music,
+                                                  @Parameter(description = "关键字（标题、歌手、专辑，支持拼音首字母）") @RequestParam(required = false) String keyword,
+                                                  @Parameter(description = "上一页返回的游标，为空时查询第一页") @RequestParam(required = false) String cursor,
+                                                  @Parameter(description = "每页数量") @RequestParam(defaultValue = "10") Integer nSize,
+                                                  @Parameter(description = "是否返回总数") @RequestParam(defaultValue = "false") Boolean withTotal) {
+        return Result.data(musicService.listByCursor(music, keyword, cursor, nSize, withTotal));
+    }
+
     @Operation(summary = "音乐文件上传")
     @PostMapping(value = "/upload")
     public Result<String> uploadMusic(
@@ -49,10 +71,29 @@ public class MusicController {
         return Result.data(musicService.uploadMusic(file));
     }
 
+    @Operation(summary = "音乐文件批量上传")
+    @PostMapping(value = "/batchUpload")
+    public Result<ImportJobVo> batchUpload(
+            @Parameter(description = "音乐文件") @RequestParam("files") List<MultipartFile> files) {
+        return Result.data(musicImportService.batchUpload(files));
+    }
+
+    @Operation(summary = "导入音乐目录中未入库的文件")
+    @PostMapping(value = "/importDirectory")
+    public Result<ImportJobVo> importDirectory() {
+        return Result.data(musicImportService.importDirectory());
+    }
+
+    @Operation(summary = "查询导入进度")
+    @GetMapping(value = "/importProgress")
+    public Result<ImportJobVo> importProgress(@Parameter(description = "任务ID", required = true) @RequestParam("jobId") String jobId) {
+        return Result.data(musicImportService.getImportProgress(jobId));
+    }
+
     @Operation(summary = "音乐文件下载")
     @GetMapping(value = "/download")
-    public ResponseEntity<Resource> download(@Parameter(description = "文件ID") @RequestParam("id") String id) {
-        return musicService.downloadMusic(id);
+    public ResponseEntity<Resource> download(@Parameter(description = "文件ID") @RequestParam("id") String id, HttpServletRequest request) {
+        return musicService.downloadMusic(id, request);
     }
 
     @Operation(summary = "音乐播放")
@@ -73,9 +114,18 @@ public class MusicController {
         return Result.data(musicService.deleteMusic(id));
     }
 
+    @Operation(summary = "热门排行榜")
+    @GetMapping("/charts")
+    public Result<List<ChartVo>> charts(@Parameter(description = "周期：day（最近24小时）、week（最近7天）") @RequestParam(defaultValue = "day") String period,
+                                        @Parameter(description = "返回数量（最多100）") @RequestParam(defaultValue = "20") Integer nSize) {
+        return Result.data(musicService.getCharts(period, nSize));
+    }
+
     @Operation(summary = "获取音乐封面")
     @GetMapping(value = "/cover")
-    public ResponseEntity<Resource> getCoverById(@Parameter(description = "音乐ID", required = true) @RequestParam("id") String id) {
-        return musicService.getCoverById(id);
+    public ResponseEntity<Resource> getCoverById(@Parameter(description = "音乐ID", required = true) @RequestParam("id") String id,
+                                                 @Parameter(description = "封面边长（像素），为空时返回原图") @RequestParam(value = "size", required = false) Integer size,
+                                                 HttpServletRequest request) {
+        return musicService.getCoverById(id, size, request);
     }
 }
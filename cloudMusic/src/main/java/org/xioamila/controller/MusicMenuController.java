@@ -12,11 +12,13 @@ import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.xioamila.dto.MenuMusicBatchDto;
 import org.xioamila.entity.Music;
 import org.xioamila.entity.MusicMenu;
 import org.xioamila.entity.MusicMenuRelation;
 import org.xioamila.service.MusicMenuRelationService;
 import org.xioamila.service.MusicMenuService;
+import org.xioamila.vo.CursorPage;
 import org.xioamila.vo.MenuMusicVo;
 import org.xioamila.vo.MenuVo;
 import org.xioamila.vo.Result;
@@ -50,6 +52,22 @@ public class MusicMenuController {
         return Result.data(menuList);
     }
 
+    @Operation(summary = "菜单列表查询（游标分页）")
+    @GetMapping("/listByCursor")
+    @Parameters({
+            @Parameter(name = "title", description = "菜单标题", in = ParameterIn.QUERY, schema = @Schema(type = "string")),
+            @Parameter(name = "createBy", description = "菜单创建人", required = true, in = ParameterIn.QUERY, schema = @Schema(type = "string"))
+    })
+    public Result<CursorPage<MenuVo>> listByCursor(@Parameter(hidden = true) MusicMenu musicMenu,
+                                                   @Parameter(description = "上一页返回的游标，为空时查询第一页") @RequestParam(required = false) String cursor,
+                                                   @Parameter(description = "每页数量") @RequestParam(defaultValue = "10") Integer nSize,
+                                                   @Parameter(description = "是否返回总数") @RequestParam(defaultValue = "false") Boolean withTotal) {
+        if (StringUtils.isBlank(musicMenu.getCreateBy())) {
+            return Result.error("用户id为空");
+        }
+        return Result.data(musicMenuService.listByCursor(musicMenu, cursor, nSize, withTotal));
+    }
+
     @PostMapping("/save")
     @Operation(summary = "新增或修改菜单")
     public Result<Boolean> save(@Valid @RequestBody MusicMenu musicMenu) {
@@ -78,11 +96,16 @@ public class MusicMenuController {
     @Operation(summary = "调整音乐顺序")
     @PostMapping("/moveMusic")
     public Result<Boolean> moveMusic(@Parameter(description = "菜单ID") @RequestParam("menuId") String menuId,
-                                     @Parameter(description = "调整前位置") @RequestParam("start") String start,
-                                     @Parameter(description = "调整后位置") @RequestParam("end") String end) {
+                                     @Parameter(description = "调整前位置（序号，从0开始）") @RequestParam("start") Integer start,
+                                     @Parameter(description = "调整后位置（序号，从0开始）") @RequestParam("end") Integer end) {
         return Result.data(musicMenuRelationService.moveMusic(menuId, start, end));
     }
 
+    @Operation(summary = "批量调整歌单音乐（删除、移动或重排、添加）")
+    @PostMapping("/batchMusic")
+    public Result<Boolean> batchMusic(@Valid @RequestBody MenuMusicBatchDto batch) {
+        return Result.data(musicMenuRelationService.batchMusic(batch));
+    }
 
     @Operation(summary = "音乐列表查询")
     @GetMapping("/listMusic")
@@ -100,4 +123,21 @@ public class MusicMenuController {
         Page<MenuMusicVo> menuMusicList = musicMenuRelationService.listMusic(new Page<>(nCurrent, nSize), menuId, music);
         return Result.data(menuMusicList);
     }
+
+    @Operation(summary = "音乐列表查询（游标分页）")
+    @GetMapping("/listMusicByCursor")
+    @Parameters({
+            @Parameter(name = "title", description = "歌曲标题", in = ParameterIn.QUERY, schema = @Schema(type = "string")),
+            @Parameter(name = "singer", description = "歌手", in = ParameterIn.QUERY, schema = @Schema(type = "string"))
+    })
+    public Result<CursorPage<MenuMusicVo>> listMusicByCursor(@Parameter(hidden = true) Music music,
+                                                             @Parameter(description = "菜单ID", required = true) @RequestParam("menuId") String menuId,
+                                                             @Parameter(description = "上一页返回的游标，为空时查询第一页") @RequestParam(required = false) String cursor,
+                                                             @Parameter(description = "每页数量") @RequestParam(defaultValue = "10") Integer nSize,
+                                                             @Parameter(description = "是否返回总数") @RequestParam(defaultValue = "false") Boolean withTotal) {
+        if (StringUtils.isBlank(menuId)) {
+            return Result.error("歌单id为空");
+        }
+        return Result.data(musicMenuRelationService.listMusicByCursor(menuId, music, cursor, nSize, withTotal));
+    }
 }
\ No newline at end of file
@@ -1,17 +1,42 @@
 package org.xioamila.controller;
 
+import lombok.AllArgsConstructor;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.xioamila.common.cache.MenuMusicCache;
+import org.xioamila.common.cache.MusicCache;
+import org.xioamila.common.search.MusicSearchIndex;
+import org.xioamila.common.stats.MusicCharts;
+import org.xioamila.common.stats.MusicCounter;
+import org.xioamila.common.storage.ResolvedFileCache;
+import org.xioamila.common.storage.ScratchSpace;
+import org.xioamila.common.utils.SecurityUtil;
 import org.xioamila.vo.Result;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/newWork")
+@AllArgsConstructor
 public class NetworkController {
 
+    private ScratchSpace scratchSpace;
+
+    private MusicSearchIndex musicSearchIndex;
+
+    private MusicCache musicCache;
+
+    private MenuMusicCache menuMusicCache;
+
+    private ResolvedFileCache resolvedFileCache;
+
+    private MusicCounter musicCounter;
+
+    private MusicCharts musicCharts;
+
     @GetMapping("/health")
     public Result healthCheck() {
         Map<String, Object> data = new HashMap<>();
@@ -22,4 +47,19 @@ public class NetworkController {
 
         return Result.success("服务正常运行", data);
     }
-}
\ No newline at end of file
+
+    @GetMapping("/metrics")
+    public Result<Map<String, Object>> metrics() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("scratch", scratchSpace.getMetrics());
+        data.put("search", musicSearchIndex.getMetrics());
+        data.put("musicCache", musicCache.getMetrics());
+        data.put("fileCache", resolvedFileCache.getMetrics());
+        data.put("menuCache", menuMusicCache.getMetrics());
+        data.put("counter", musicCounter.getMetrics());
+        data.put("charts", musicCharts.getMetrics());
+        data.put("tokenCache", SecurityUtil.getTokenCacheMetrics());
+
+        return Result.success("查询成功", data);
+    }
+}
@@ -15,6 +15,7 @@ import org.springframework.web.bind.annotation.*;
 import org.xioamila.dto.LoginDto;
 import org.xioamila.dto.RegisterDto;
 import org.xioamila.entity.User;
+import org.xioamila.vo.CursorPage;
 import org.xioamila.vo.LoginVo;
 import org.xioamila.vo.Result;
 import org.xioamila.service.UserService;
@@ -60,6 +61,18 @@ public class UserController {
         return Result.success("查询成功", pageList);
     }
 
+    @Operation(summary = "用户列表查询（游标分页）")
+    @GetMapping("/listByCursor")
+    @Parameters({
+            @Parameter(name = "nickname", description = "用户昵称", in = ParameterIn.QUERY, schema = @Schema(type = "string"))
+    })
+    public Result<CursorPage<User>> listByCursor(@RequestParam(required = false) String nickname,
+                                                 @Parameter(description = "上一页返回的游标，为空时查询第一页") @RequestParam(required = false) String cursor,
+                                                 @Parameter(description = "每页数量") @RequestParam(defaultValue = "10") Integer nSize,
+                                                 @Parameter(description = "是否返回总数") @RequestParam(defaultValue = "false") Boolean withTotal) {
+        return Result.success("查询成功", userService.listByCursor(nickname, cursor, nSize, withTotal));
+    }
+
     @PutMapping("/update")
     @Operation(summary = "更新用户信息")
     public Result<Boolean> updateUser(@RequestBody User user) {
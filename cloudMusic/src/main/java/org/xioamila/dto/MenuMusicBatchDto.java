@@ -0,0 +1,47 @@
+package org.xioamila.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+@Data
+@Schema(description = "歌单音乐批量调整请求（依次执行删除、移动或重排、添加）")
+public class MenuMusicBatchDto {
+
+    @NotBlank(message = "歌单id不能为空")
+    @Schema(description = "歌单id", required = true)
+    private String menuId;
+
+    @Schema(description = "要删除的关系id")
+    private List<String> removeIds;
+
+    @Valid
+    @Schema(description = "依次执行的移动（序号为执行该移动时的序号）")
+    private List<Move> moves;
+
+    @Schema(description = "调整后的完整顺序（歌单中全部关系id），与 moves 不能同时使用")
+    private List<String> order;
+
+    @Schema(description = "要添加的音乐id（按给定顺序添加到歌单最前面，已存在的忽略）")
+    private List<String> addMusicIds;
+
+    @Data
+    @Schema(description = "音乐移动")
+    public static class Move {
+
+        @NotNull(message = "调整前位置不能为空")
+        @Min(value = 0, message = "调整前位置不能小于0")
+        @Schema(description = "调整前位置（序号，从0开始）", required = true)
+        private Integer start;
+
+        @NotNull(message = "调整后位置不能为空")
+        @Min(value = 0, message = "调整后位置不能小于0")
+        @Schema(description = "调整后位置（序号，从0开始）", required = true)
+        private Integer end;
+    }
+}
@@ -79,4 +79,10 @@ public class Music extends BaseEntity {
     @Schema(description = "封面地址")
     private String coverUrl;
 
+    /**
+     * 文件内容摘要（SHA-256），相同内容的音乐共用同一个文件
+     */
+    @Schema(description = "文件内容摘要（SHA-256）")
+    private String contentHash;
+
 }
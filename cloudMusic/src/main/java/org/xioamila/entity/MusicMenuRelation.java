@@ -26,9 +26,9 @@ public class MusicMenuRelation extends BaseEntity {
     private String menuId;
 
     /**
-     * 排序
+     * 排序（带间隔的数值，越小越靠前）
      */
     @Schema(description = "排序")
-    private String position;
+    private Long position;
 
 }
@@ -2,11 +2,35 @@ package org.xioamila.mapper;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import org.apache.ibatis.annotations.Param;
+import org.xioamila.common.stats.CountDelta;
 import org.xioamila.entity.Music;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 
+import java.util.Date;
+import java.util.List;
+
 public interface MusicMapper extends BaseMapper<Music>{
 
-    Page<Music> getPageList(Page<Music> page, @Param("music") Music music);
+    Page<Music> getPageList(Page<Music> page, @Param("music") Music music, @Param("keyword") String keyword);
+
+    /**
+     * 游标分页查询音乐列表（按创建时间、id 倒序）
+     * @param cursorTime 上一页最后一条的创建时间，为空时查询第一页
+     * @param cursorId 上一页最后一条的id
+     * @param limit 查询条数
+     */
+    List<Music> listByCursor(@Param("music") Music music, @Param("keyword") String keyword,
+                             @Param("cursorTime") Date cursorTime, @Param("cursorId") String cursorId,
+                             @Param("limit") int limit);
+
+    /**
+     * 统计音乐数量
+     */
+    long countList(@Param("music") Music music, @Param("keyword") String keyword);
+
+    /**
+     * 批量累加播放、下载次数（一条 UPDATE 语句）
+     */
+    int incrementCounts(@Param("deltas") List<CountDelta> deltas);
 
 }
@@ -2,9 +2,14 @@ package org.xioamila.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import org.apache.ibatis.annotations.Param;
 import org.xioamila.entity.MusicMenu;
 import org.xioamila.vo.MenuVo;
 
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
 public interface MusicMenuMapper extends BaseMapper<MusicMenu>{
 
     /**
@@ -14,4 +19,38 @@ public interface MusicMenuMapper extends BaseMapper<MusicMenu>{
      * @return
      */
     Page<MenuVo> getPageList(Page page, MusicMenu musicMenu);
+
+    /**
+     * 游标分页查询用户的音乐菜单列表（按创建时间、id 倒序）
+     * @param musicMenu
+     * @param cursorTime 上一页最后一条的创建时间，为空时查询第一页
+     * @param cursorId 上一页最后一条的id
+     * @param limit 查询条数
+     * @return
+     */
+    List<MenuVo> listByCursor(@Param("musicMenu") MusicMenu musicMenu, @Param("cursorTime") Date cursorTime,
+                              @Param("cursorId") String cursorId, @Param("limit") int limit);
+
+    /**
+     * 增减歌单的音乐数量和总时长
+     * @param menuId
+     * @param musicIds 添加或删除的音乐id
+     * @param sign 1 表示添加，-1 表示删除
+     * @return
+     */
+    int adjustStats(@Param("menuId") String menuId, @Param("musicIds") Collection<String> musicIds,
+                    @Param("sign") int sign);
+
+    /**
+     * 音乐删除前，从包含该音乐的所有歌单中减去其数量和时长
+     * @param musicId
+     * @return
+     */
+    int decrementByMusic(@Param("musicId") String musicId);
+
+    /**
+     * 按关系表重新统计并修正所有歌单的音乐数量和总时长
+     * @return 修正的歌单数量
+     */
+    int reconcileStats();
 }
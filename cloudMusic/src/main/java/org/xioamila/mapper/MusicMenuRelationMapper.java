@@ -8,6 +8,8 @@ import org.xioamila.entity.Music;
 import org.xioamila.entity.MusicMenuRelation;
 import org.xioamila.vo.MenuMusicVo;
 
+import java.util.List;
+
 public interface MusicMenuRelationMapper extends BaseMapper<MusicMenuRelation>{
 
     /**
@@ -20,42 +22,75 @@ public interface MusicMenuRelationMapper extends BaseMapper<MusicMenuRelation>{
     Page<MenuMusicVo> listMusic(Page page, @Param("menuId") String menuId, @Param("music") Music music);
 
     /**
-     * 修改歌曲位置
-     * @param menuId  歌曲所在菜单id
-     * @param start   歌曲移动前的位置
-     * @param end     歌曲移动后的位置
+     * 游标分页查询歌单中的音乐列表（按位置、id 正序）
+     * @param menuId
+     * @param music
+     * @param cursorPosition 上一页最后一条的位置，为空时查询第一页
+     * @param cursorId 上一页最后一条的关系id
+     * @param limit 查询条数
      * @return
      */
-    @Update("<script>" +
-            "UPDATE music_menu_relation " +
-            "SET position = CASE " +
-            "   WHEN position = #{start} THEN #{end} " +
-            "   WHEN #{start} &gt; #{end} THEN position + 1 " +
-            "   WHEN #{start} &lt; #{end} THEN position - 1 " +
-            "   ELSE position " +
-            "END " +
-            "WHERE deleted = '0' AND menu_id = #{menuId} " +
-            "AND position BETWEEN LEAST(#{start}, #{end}) AND GREATEST(#{start}, #{end}) " +
-            "</script>")
-    int updatePosition(@Param("menuId") String menuId, @Param("start") String start, @Param("end") String end);
+    List<MenuMusicVo> listMusicByCursor(@Param("menuId") String menuId, @Param("music") Music music,
+                                        @Param("cursorPosition") Long cursorPosition, @Param("cursorId") String cursorId,
+                                        @Param("limit") int limit);
+
+    /**
+     * 统计歌单中的音乐数量
+     * @param menuId
+     * @param music
+     * @return
+     */
+    long countMusic(@Param("menuId") String menuId, @Param("music") Music music);
+
+    /**
+     * 按顺序查询歌单中全部音乐的关系id、音乐id和位置（不含已删除的音乐），用于歌单内容缓存
+     * @param menuId
+     * @return
+     */
+    List<MusicMenuRelation> listContents(@Param("menuId") String menuId);
+
+    /**
+     * 按序号查询歌单中的音乐（按位置、id 正序，不含已删除的音乐，序号与列表一致）
+     * @param menuId
+     * @param offset 起始序号（从0开始）
+     * @param limit 查询条数
+     * @return 只包含 id、menuId、musicId、position
+     */
+    List<MusicMenuRelation> listByIndex(@Param("menuId") String menuId, @Param("offset") long offset,
+                                        @Param("limit") int limit);
+
+    /**
+     * 批量修改位置（一条 UPDATE 语句）
+     * @param menuId
+     * @param relations 关系id和新位置
+     * @return
+     */
+    int updatePositions(@Param("menuId") String menuId, @Param("relations") List<MusicMenuRelation> relations);
+
+    /**
+     * 歌单中最靠前的位置
+     * @param menuId
+     * @return 歌单为空时返回 null
+     */
+    Long minPosition(@Param("menuId") String menuId);
 
     /**
-     * 调整菜单列表中所有音乐的排序
+     * 重新编号菜单列表中所有音乐的排序（保持原有先后，按 step 重新拉开间隔）
+     * 按 (position, id) 索引顺序扫描一次计算行号，只修改位置有变化的行
      * @param menuId
+     * @param step 相邻音乐的位置间隔
      * @return
      */
     @Update("<script>" +
             "UPDATE music_menu_relation t1 " +
-            "SET t1.position = ( " +
-            "   SELECT count(1) " +
-            "   FROM ( " +
-            "       SELECT * FROM music_menu_relation " +
-            "       WHERE deleted = '0' AND menu_id = #{menuId} " +
-            "   ) t2 " +
-            "   WHERE t1.position > t2.position " +
-            ") " +
-            "WHERE t1.deleted = '0' AND t1.menu_id = #{menuId}" +
+            "INNER JOIN ( " +
+            "   SELECT id, ROW_NUMBER() OVER (ORDER BY position, id) - 1 AS row_index " +
+            "   FROM music_menu_relation " +
+            "   WHERE deleted = '0' AND menu_id = #{menuId} " +
+            ") t2 ON t2.id = t1.id " +
+            "SET t1.position = t2.row_index * #{step} " +
+            "WHERE t1.position &lt;&gt; t2.row_index * #{step}" +
             "</script>")
-    int updateBatchPosition(@Param("menuId") String menuId);
+    int updateBatchPosition(@Param("menuId") String menuId, @Param("step") long step);
 
 }
@@ -0,0 +1,24 @@
+package org.xioamila.service;
+
+import org.springframework.web.multipart.MultipartFile;
+import org.xioamila.vo.ImportJobVo;
+
+import java.util.List;
+
+public interface MusicImportService {
+
+    /**
+     * 批量上传音乐文件（并行解析，批量入库，每个文件独立成功或失败）
+     */
+    ImportJobVo batchUpload(List<MultipartFile> files);
+
+    /**
+     * 扫描音乐目录，导入尚未入库的音乐文件（后台执行）
+     */
+    ImportJobVo importDirectory();
+
+    /**
+     * 查询导入任务进度
+     */
+    ImportJobVo getImportProgress(String jobId);
+}
@@ -2,8 +2,10 @@ package org.xioamila.service;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
+import org.xioamila.dto.MenuMusicBatchDto;
 import org.xioamila.entity.Music;
 import org.xioamila.entity.MusicMenuRelation;
+import org.xioamila.vo.CursorPage;
 import org.xioamila.vo.MenuMusicVo;
 
 import java.util.List;
@@ -15,6 +17,11 @@ public interface MusicMenuRelationService extends IService<MusicMenuRelation> {
      */
     Page<MenuMusicVo> listMusic(Page page, String menuId, Music music);
 
+    /**
+     * 菜单音乐列表（游标分页，按位置正序）
+     */
+    CursorPage<MenuMusicVo> listMusicByCursor(String menuId, Music music, String cursor, int size, boolean withTotal);
+
     /**
      * 添加音乐
      */
@@ -27,7 +34,14 @@ public interface MusicMenuRelationService extends IService<MusicMenuRelation> {
 
     /**
      * 调整音乐顺序
+     * @param start 调整前的序号（从0开始）
+     * @param end 调整后的序号（从0开始）
+     */
+    boolean moveMusic(String menuId, int start, int end);
+
+    /**
+     * 批量调整歌单音乐（删除、移动或重排、添加在同一个事务中执行）
      */
-    boolean moveMusic(String menuId, String start, String end);
+    boolean batchMusic(MenuMusicBatchDto batch);
 
 }
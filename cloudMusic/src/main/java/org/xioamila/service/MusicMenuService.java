@@ -3,6 +3,7 @@ package org.xioamila.service;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
 import org.xioamila.entity.MusicMenu;
+import org.xioamila.vo.CursorPage;
 import org.xioamila.vo.MenuVo;
 
 import java.util.List;
@@ -14,6 +15,11 @@ public interface MusicMenuService extends IService<MusicMenu> {
      */
     Page<MenuVo> getPageList(Page page, MusicMenu musicMenu);
 
+    /**
+     * 菜单列表（游标分页，按创建时间倒序）
+     */
+    CursorPage<MenuVo> listByCursor(MusicMenu musicMenu, String cursor, int size, boolean withTotal);
+
     /**
      * 删除菜单
      */
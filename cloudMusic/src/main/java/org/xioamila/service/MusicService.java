@@ -6,15 +6,27 @@ import org.springframework.core.io.Resource;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.multipart.MultipartFile;
 import org.xioamila.entity.Music;
+import org.xioamila.vo.ChartVo;
+import org.xioamila.vo.CursorPage;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.List;
 
 public interface MusicService extends IService<Music> {
 
     /**
      * 音乐列表
+     * @param keyword 关键字（匹配标题、歌手、专辑），有检索条件时按相关度排序
      */
-    Page<Music> getPageList(Page<Music> page, Music music);
+    Page<Music> getPageList(Page<Music> page, Music music, String keyword);
+
+    /**
+     * 音乐列表（游标分页）
+     * 没有检索条件时按创建时间倒序，有检索条件时按相关度排序
+     * @param cursor 上一页返回的游标，为空时查询第一页
+     * @param withTotal 是否返回总数
+     */
+    CursorPage<Music> listByCursor(Music music, String keyword, String cursor, int size, boolean withTotal);
 
     /**
      * 上传音乐文件
@@ -24,7 +36,7 @@ public interface MusicService extends IService<Music> {
     /**
      * 下载音乐文件
      */
-    ResponseEntity<Resource> downloadMusic(String id);
+    ResponseEntity<Resource> downloadMusic(String id, HttpServletRequest request);
 
     /**
      * 播放音乐文件
@@ -41,8 +53,15 @@ public interface MusicService extends IService<Music> {
      */
     boolean deleteMusic(String id);
 
+    /**
+     * 热门排行榜
+     * @param period 周期：day（最近 24 小时）、week（最近 7 天）
+     * @param size 返回数量
+     */
+    List<ChartVo> getCharts(String period, int size);
+
     /**
      * 获取音乐封面
      */
-    ResponseEntity<Resource> getCoverById(String id);
+    ResponseEntity<Resource> getCoverById(String id, Integer size, HttpServletRequest request);
 }
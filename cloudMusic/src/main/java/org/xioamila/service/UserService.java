@@ -4,6 +4,7 @@ import com.baomidou.mybatisplus.extension.service.IService;
 import org.xioamila.dto.LoginDto;
 import org.xioamila.dto.RegisterDto;
 import org.xioamila.entity.User;
+import org.xioamila.vo.CursorPage;
 import org.xioamila.vo.LoginVo;
 import org.xioamila.vo.Result;
 
@@ -15,4 +16,9 @@ public interface UserService extends IService<User> {
 
     boolean updateUser(User user);
 
+    /**
+     * 用户列表（游标分页，按创建时间倒序）
+     */
+    CursorPage<User> listByCursor(String nickname, String cursor, int size, boolean withTotal);
+
 }
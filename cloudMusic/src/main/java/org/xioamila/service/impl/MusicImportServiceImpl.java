@@ -0,0 +1,346 @@
+package org.xioamila.service.impl;
+
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.greatmap.modules.core.exception.ServiceException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.xioamila.common.context.UserContext;
+import org.xioamila.common.search.MusicSearchIndex;
+import org.xioamila.common.storage.MusicIngestor;
+import org.xioamila.common.utils.FileParseUtil;
+import org.xioamila.entity.Music;
+import org.xioamila.entity.User;
+import org.xioamila.mapper.MusicMapper;
+import org.xioamila.service.MusicImportService;
+import org.xioamila.service.MusicService;
+import org.xioamila.vo.ImportJobVo;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MusicImportServiceImpl implements MusicImportService {
+
+    // 每批插入的记录数
+    private static final int BATCH_SIZE = 500;
+
+    // 查询已存在歌曲时每次 IN 的标题数量
+    private static final int QUERY_CHUNK_SIZE = 1000;
+
+    // 保留的导入任务数量
+    private static final int MAX_JOBS = 100;
+
+    @Value("${app.file.upload.max-concurrent:10}")
+    private int maxConcurrent;
+
+    private final MusicService musicService;
+
+    private final MusicMapper musicMapper;
+
+    private final MusicIngestor musicIngestor;
+
+    private final MusicSearchIndex musicSearchIndex;
+
+    private final ThreadPoolTaskExecutor taskExecutor;
+
+    // 解析文件的专用线程池：目录导入本身运行在 taskExecutor 上并等待解析结果，不能把解析任务排到同一个线程池
+    private ThreadPoolTaskExecutor parseExecutor;
+
+    private final Map<String, ImportJobVo> jobs = Collections.synchronizedMap(
+            new LinkedHashMap<String, ImportJobVo>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ImportJobVo> eldest) {
+                    return size() > MAX_JOBS;
+                }
+            });
+
+    @PostConstruct
+    public void init() {
+        parseExecutor = new ThreadPoolTaskExecutor();
+        parseExecutor.setCorePoolSize(maxConcurrent);
+        parseExecutor.setMaxPoolSize(maxConcurrent);
+        parseExecutor.setAllowCoreThreadTimeOut(true);
+        parseExecutor.setThreadNamePrefix("music-import-");
+        parseExecutor.initialize();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        parseExecutor.shutdown();
+    }
+
+    @Override
+    public ImportJobVo batchUpload(List<MultipartFile> files) {
+        if (files == null || files.isEmpty()) {
+            throw new ServiceException("上传失败：文件不能为空");
+        }
+
+        List<ImportTask> tasks = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            Map<String, Object> fileNameInfo = FileParseUtil.parseFileName(file.getOriginalFilename());
+            tasks.add(new ImportTask(file.getOriginalFilename(), file.getSize(), fileNameInfo, true,
+                    () -> musicIngestor.ingestUpload(file, fileNameInfo)));
+        }
+
+        // 上传文件在请求结束后会被清理，因此在当前请求内完成处理
+        ImportJobVo job = createJob(tasks.size());
+        runImport(job, tasks);
+        return job;
+    }
+
+    @Override
+    public ImportJobVo importDirectory() {
+        File musicDirectory = musicIngestor.getMusicDirectory();
+        File[] files = musicDirectory.listFiles(file -> file.isFile() && !file.isHidden());
+        if (files == null) {
+            throw new ServiceException("音乐目录不存在：" + musicDirectory.getAbsolutePath());
+        }
+
+        // 排除已入库的文件
+        Set<String> knownPaths = musicMapper.selectObjs(Wrappers.lambdaQuery(Music.class).select(Music::getFilePath))
+                .stream()
+                .map(String::valueOf)
+                .collect(Collectors.toSet());
+
+        List<ImportTask> tasks = new ArrayList<>();
+        for (File file : files) {
+            String filePath = file.getName();
+            if (knownPaths.contains(filePath)) {
+                continue;
+            }
+            Map<String, Object> fileNameInfo = FileParseUtil.parseFileName(filePath);
+            tasks.add(new ImportTask(filePath, file.length(), fileNameInfo, false,
+                    () -> musicIngestor.ingest(file, fileNameInfo, filePath)));
+        }
+
+        ImportJobVo job = createJob(tasks.size());
+        log.info("开始导入音乐目录: {}, 待导入文件: {}, 任务id: {}", musicDirectory, tasks.size(), job.getJobId());
+
+        // 在后台执行，审计字段需要沿用发起导入的用户
+        User user = UserContext.getUser();
+        taskExecutor.execute(() -> {
+            UserContext.setUser(user);
+            try {
+                runImport(job, tasks);
+            } catch (Exception e) {
+                log.error("导入音乐目录失败, 任务id: {}", job.getJobId(), e);
+                job.finish();
+            } finally {
+                UserContext.clear();
+            }
+        });
+        return job;
+    }
+
+    @Override
+    public ImportJobVo getImportProgress(String jobId) {
+        ImportJobVo job = jobs.get(jobId);
+        if (job == null) {
+            throw new ServiceException("导入任务不存在：" + jobId);
+        }
+        return job;
+    }
+
+    private ImportJobVo createJob(int total) {
+        ImportJobVo job = new ImportJobVo();
+        job.setJobId(UUID.randomUUID().toString());
+        job.setTotal(total);
+        jobs.put(job.getJobId(), job);
+        return job;
+    }
+
+    /**
+     * 执行导入：过滤重复歌曲，在专用线程池中并行解析（同时最多 maxConcurrent 个），
+     * 按完成顺序收集解析结果，每满 BATCH_SIZE 条入库一次（内存中最多保留一批记录）
+     */
+    private void runImport(ImportJobVo job, List<ImportTask> tasks) {
+        Set<String> existingKeys = findExistingKeys(tasks);
+        Set<String> batchKeys = new HashSet<>();
+
+        CompletionService<Music> completion = new ExecutorCompletionService<>(parseExecutor.getThreadPoolExecutor());
+        Map<Future<Music>, ImportTask> running = new HashMap<>();
+        List<Music> chunk = new ArrayList<>(BATCH_SIZE);
+        List<ImportTask> chunkTasks = new ArrayList<>(BATCH_SIZE);
+        try {
+            for (ImportTask task : tasks) {
+                // 验证是否已存在该歌曲（title + singer），包括同一批次中的重复文件
+                String key = task.getKey();
+                if (existingKeys.contains(key) || !batchKeys.add(key)) {
+                    job.fail(task.name, "歌曲已存在");
+                    continue;
+                }
+
+                // 同时解析的文件数达到上限时，先处理已完成的
+                while (running.size() >= maxConcurrent) {
+                    collect(job, completion.take(), running, chunk, chunkTasks);
+                }
+                running.put(completion.submit(task.ingest), task);
+            }
+            while (!running.isEmpty()) {
+                collect(job, completion.take(), running, chunk, chunkTasks);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Future<Music> future : running.keySet()) {
+                future.cancel(true);
+            }
+            throw new ServiceException("导入被中断");
+        } finally {
+            // 已解析的记录（包括中断前的）入库
+            saveAll(job, chunk, chunkTasks);
+        }
+
+        job.finish();
+        log.info("导入完成, 任务id: {}, 成功: {}, 失败: {}, 耗时: {}ms, {} 文件/秒",
+                job.getJobId(), job.getSucceeded(), job.getFailed(), job.getElapsedMillis(),
+                String.format("%.2f", job.getFilesPerSecond()));
+    }
+
+    /**
+     * 处理一个已完成的解析任务：成功的加入当前批次（满一批时入库），失败的记录原因
+     */
+    private void collect(ImportJobVo job, Future<Music> future, Map<Future<Music>, ImportTask> running,
+                         List<Music> chunk, List<ImportTask> chunkTasks) throws InterruptedException {
+        ImportTask task = running.remove(future);
+        job.getProcessedBytes().addAndGet(task.size);
+        try {
+            chunk.add(future.get());
+            chunkTasks.add(task);
+            job.getParsed().incrementAndGet();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (!(cause instanceof ServiceException)) {
+                log.warn("导入音乐文件失败: {}", task.name, cause);
+            }
+            job.fail(task.name, cause.getMessage());
+            return;
+        }
+        if (chunk.size() >= BATCH_SIZE) {
+            saveAll(job, chunk, chunkTasks);
+        }
+    }
+
+    /**
+     * 插入一批记录并清空；整批失败时逐条插入，保证每个文件独立成功或失败
+     */
+    private void saveAll(ImportJobVo job, List<Music> musics, List<ImportTask> tasks) {
+        if (musics.isEmpty()) {
+            return;
+        }
+        try {
+            musicService.saveBatch(musics, BATCH_SIZE);
+            for (Music music : musics) {
+                musicSearchIndex.index(music);
+                job.getSucceeded().incrementAndGet();
+                // 解析时固定的音乐文件和封面，入库后解除
+                musicIngestor.unpin(music);
+            }
+        } catch (Exception e) {
+            log.warn("批量保存音乐失败，改为逐条保存: {}", e.getMessage());
+            for (int i = 0; i < musics.size(); i++) {
+                saveOne(job, musics.get(i), tasks.get(i));
+            }
+        } finally {
+            musics.clear();
+            tasks.clear();
+        }
+    }
+
+    private void saveOne(ImportJobVo job, Music music, ImportTask task) {
+        try {
+            // 批量失败后重新插入，清除批量插入时回填的主键
+            music.setId(null);
+            if (musicService.save(music)) {
+                musicSearchIndex.index(music);
+                job.getSucceeded().incrementAndGet();
+                musicIngestor.unpin(music);
+                return;
+            }
+            job.fail(task.name, "数据库保存失败");
+        } catch (Exception e) {
+            log.warn("保存音乐失败: {}", task.name, e);
+            job.fail(task.name, "数据库保存失败");
+        }
+
+        // 上传的文件随记录一起丢弃；目录中原有的音乐文件保留，只清理生成的封面（先解除固定才能删除）
+        musicIngestor.unpin(music);
+        if (task.ownsFile) {
+            musicIngestor.discard(music);
+        } else {
+            musicIngestor.discardCover(music);
+        }
+    }
+
+    /**
+     * 一次性查询本批文件中已存在的歌曲（title + singer）
+     */
+    private Set<String> findExistingKeys(List<ImportTask> tasks) {
+        List<String> titles = tasks.stream()
+                .map(task -> (String) task.fileNameInfo.get("title"))
+                .distinct()
+                .collect(Collectors.toList());
+
+        Set<String> keys = new HashSet<>();
+        for (int from = 0; from < titles.size(); from += QUERY_CHUNK_SIZE) {
+            List<String> chunk = titles.subList(from, Math.min(from + QUERY_CHUNK_SIZE, titles.size()));
+            List<Music> existing = musicMapper.selectList(Wrappers.lambdaQuery(Music.class)
+                    .select(Music::getTitle, Music::getSinger)
+                    .in(Music::getTitle, chunk));
+            for (Music music : existing) {
+                keys.add(music.getTitle() + "\u0000" + music.getSinger());
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * 单个待导入文件
+     */
+    private static class ImportTask {
+
+        private final String name;
+
+        private final long size;
+
+        private final Map<String, Object> fileNameInfo;
+
+        // 音乐文件是否由本次导入写入（失败时需要删除）
+        private final boolean ownsFile;
+
+        private final Callable<Music> ingest;
+
+        ImportTask(String name, long size, Map<String, Object> fileNameInfo, boolean ownsFile, Callable<Music> ingest) {
+            this.name = name;
+            this.size = size;
+            this.fileNameInfo = fileNameInfo;
+            this.ownsFile = ownsFile;
+            this.ingest = ingest;
+        }
+
+        String getKey() {
+            return fileNameInfo.get("title") + "\u0000" + fileNameInfo.get("singer");
+        }
+    }
+}
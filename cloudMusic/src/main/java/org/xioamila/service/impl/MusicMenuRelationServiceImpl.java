@@ -1,31 +1,135 @@
 package org.xioamila.service.impl;
 
+import cn.hutool.core.collection.CollectionUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.greatmap.modules.core.exception.ServiceException;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.xioamila.common.cache.CountCache;
+import org.xioamila.common.cache.MenuMusicCache;
+import org.xioamila.common.cache.MusicCache;
+import org.xioamila.common.utils.PageCursor;
+import org.xioamila.dto.MenuMusicBatchDto;
 import org.xioamila.entity.Music;
+import org.xioamila.entity.MusicMenu;
 import org.xioamila.entity.MusicMenuRelation;
+import org.xioamila.mapper.MusicMapper;
+import org.xioamila.mapper.MusicMenuMapper;
 import org.xioamila.mapper.MusicMenuRelationMapper;
 import org.xioamila.service.MusicMenuRelationService;
+import org.xioamila.vo.CursorPage;
 import org.xioamila.vo.MenuMusicVo;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 @Service
 @AllArgsConstructor
 public class MusicMenuRelationServiceImpl extends ServiceImpl<MusicMenuRelationMapper, MusicMenuRelation> implements MusicMenuRelationService {
 
+    // 相邻音乐的位置间隔
+    private static final long POSITION_STEP = 1024;
+
+    // 批量插入、批量修改位置时每批的数量
+    private static final int UPDATE_BATCH_SIZE = 1000;
+
+    // 移动后与相邻音乐的间隔小于该值时，在后台重新编号
+    private static final long REBALANCE_GAP = 8;
+
     private MusicMenuRelationMapper musicMenuRelationMapper;
 
+    private MusicMenuMapper musicMenuMapper;
+
+    private MusicMapper musicMapper;
+
+    private CountCache countCache;
+
+    private MusicCache musicCache;
+
+    private MenuMusicCache menuMusicCache;
+
+    private ThreadPoolTaskExecutor taskExecutor;
+
+    // 已安排后台重新编号的歌单
+    private final Set<String> pendingRebalances = ConcurrentHashMap.newKeySet();
+
     @Override
     public Page<MenuMusicVo> listMusic(Page page, String menuId, Music music) {
-        return musicMenuRelationMapper.listMusic(page, menuId, music);
+        if (isUnfiltered(music)) {
+            // 没有筛选条件时从歌单内容缓存中截取
+            MenuMusicCache.MenuContents contents = getContents(menuId);
+            if (contents != null) {
+                long offset = Math.max(0, (page.getCurrent() - 1) * page.getSize());
+                int from = (int) Math.min(offset, contents.size());
+                int to = page.getSize() < 0 ? contents.size() : (int) Math.min(from + page.getSize(), contents.size());
+                List<MenuMusicVo> records = toMusicVos(menuId, contents, from, to);
+                if (records != null) {
+                    Page<MenuMusicVo> result = new Page<>(page.getCurrent(), page.getSize(), contents.size());
+                    result.setRecords(records);
+                    return result;
+                }
+            }
+        }
+
+        Page<MenuMusicVo> result = musicMenuRelationMapper.listMusic(page, menuId, music);
+        if (isUnfiltered(music)) {
+            // 没有筛选条件时返回在歌单中的序号
+            long offset = (result.getCurrent() - 1) * result.getSize();
+            List<MenuMusicVo> records = result.getRecords();
+            for (int i = 0; i < records.size(); i++) {
+                records.get(i).setIndex((int) (offset + i));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public CursorPage<MenuMusicVo> listMusicByCursor(String menuId, Music music, String cursor, int size, boolean withTotal) {
+        int pageSize = CursorPage.clampSize(size);
+        PageCursor pageCursor = PageCursor.decode(cursor);
+        if (isUnfiltered(music)) {
+            MenuMusicCache.MenuContents contents = getContents(menuId);
+            if (contents != null) {
+                int from = pageCursor == null ? 0 : contents.indexAfter(pageCursor.getKey(), pageCursor.getId());
+                List<MenuMusicVo> rows = toMusicVos(menuId, contents, from, Math.min(from + pageSize + 1, contents.size()));
+                if (rows != null) {
+                    CursorPage<MenuMusicVo> page = CursorPage.of(rows, pageSize,
+                            last -> new PageCursor(last.getPosition(), last.getId()).encode());
+                    if (withTotal) {
+                        page.setTotal((long) contents.size());
+                    }
+                    return page;
+                }
+            }
+        }
+
+        List<MenuMusicVo> rows = musicMenuRelationMapper.listMusicByCursor(menuId, music,
+                pageCursor == null ? null : pageCursor.getKey(),
+                pageCursor == null ? null : pageCursor.getId(),
+                pageSize + 1);
+        CursorPage<MenuMusicVo> page = CursorPage.of(rows, pageSize,
+                last -> new PageCursor(last.getPosition(), last.getId()).encode());
+        if (withTotal) {
+            String countKey = "menuMusic:" + menuId + ":" + music.getTitle() + ":" + music.getSinger();
+            page.setTotal(countCache.get(countKey, () -> musicMenuRelationMapper.countMusic(menuId, music)));
+        }
+        return page;
     }
 
     @Override
@@ -38,22 +142,13 @@ public class MusicMenuRelationServiceImpl extends ServiceImpl<MusicMenuRelationM
             throw new ServiceException("已存在该歌曲");
         }
 
-        long musicNum = this.count(new LambdaQueryWrapper<MusicMenuRelation>()
-                .eq(MusicMenuRelation::getMenuId, musicMenuRelation.getMenuId()));
-        if (musicNum > 0) {
-            // 插入添加的音乐
-            musicMenuRelation.setPosition(String.valueOf(musicNum));
-            this.save(musicMenuRelation);
-
-            String start = musicMenuRelation.getPosition();
-            String end = "0";
-            // 更新关系表中的排序
-            musicMenuRelationMapper.updatePosition(musicMenuRelation.getMenuId(), start, end);
-        } else {
-            // 插入添加的音乐
-            musicMenuRelation.setPosition("0");
-            this.save(musicMenuRelation);
-        }
+        // 插入到歌单最前面（位置比当前最靠前的音乐小一个间隔），不修改其他音乐
+        Long minPosition = musicMenuRelationMapper.minPosition(musicMenuRelation.getMenuId());
+        musicMenuRelation.setPosition(minPosition == null ? 0 : minPosition - POSITION_STEP);
+        this.save(musicMenuRelation);
+        menuMusicCache.invalidate(musicMenuRelation.getMenuId());
+        musicMenuMapper.adjustStats(musicMenuRelation.getMenuId(),
+                Collections.singletonList(musicMenuRelation.getMusicId()), 1);
 
         return true;
     }
@@ -61,19 +156,286 @@ public class MusicMenuRelationServiceImpl extends ServiceImpl<MusicMenuRelationM
     @Override
     @Transactional
     public boolean deleteMusic(String menuId, List<String> ids) {
-        // 先删除
-        this.removeBatchByIds(ids);
+        // 删除后其余音乐的先后不变，不需要重新编号
+        removeRelations(menuId, ids);
+        menuMusicCache.invalidate(menuId);
 
-        musicMenuRelationMapper.updateBatchPosition(menuId);
+        return true;
+    }
+
+    @Override
+    @Transactional
+    public boolean moveMusic(String menuId, int start, int end) {
+        if (start < 0 || end < 0) {
+            throw new ServiceException("无效的音乐位置");
+        }
+        if (start == end) {
+            return true;
+        }
+        menuMusicCache.invalidate(menuId);
+
+        List<MusicMenuRelation> moved = musicMenuRelationMapper.listByIndex(menuId, start, 1);
+        if (moved.isEmpty()) {
+            throw new ServiceException("调整前位置不存在");
+        }
+
+        Long position = positionAt(menuId, start, end);
+        if (position == null) {
+            // 相邻音乐之间没有可用的间隔，重新编号后再计算
+            musicMenuRelationMapper.updateBatchPosition(menuId, POSITION_STEP);
+            position = positionAt(menuId, start, end);
+        }
+
+        // 只修改被移动的音乐
+        this.update(new LambdaUpdateWrapper<MusicMenuRelation>()
+                .set(MusicMenuRelation::getPosition, position)
+                .eq(MusicMenuRelation::getId, moved.get(0).getId()));
 
         return true;
     }
 
     @Override
     @Transactional
-    public boolean moveMusic(String menuId, String start, String end) {
-        musicMenuRelationMapper.updatePosition(menuId, start, end);
+    public boolean batchMusic(MenuMusicBatchDto batch) {
+        String menuId = batch.getMenuId();
+        if (CollectionUtil.isNotEmpty(batch.getMoves()) && CollectionUtil.isNotEmpty(batch.getOrder())) {
+            throw new ServiceException("移动和重排不能同时使用");
+        }
+        menuMusicCache.invalidate(menuId);
+
+        // 1. 删除（只删除该歌单中的关系）
+        removeRelations(menuId, batch.getRemoveIds());
+
+        // 2. 移动或重排
+        if (CollectionUtil.isNotEmpty(batch.getMoves())) {
+            for (MenuMusicBatchDto.Move move : batch.getMoves()) {
+                moveMusic(menuId, move.getStart(), move.getEnd());
+            }
+        } else if (CollectionUtil.isNotEmpty(batch.getOrder())) {
+            reorder(menuId, batch.getOrder());
+        }
+
+        // 3. 添加
+        if (CollectionUtil.isNotEmpty(batch.getAddMusicIds())) {
+            addMusics(menuId, batch.getAddMusicIds());
+        }
 
         return true;
     }
+
+    private static boolean isUnfiltered(Music music) {
+        return StringUtils.isBlank(music.getTitle()) && StringUtils.isBlank(music.getSinger());
+    }
+
+    /**
+     * 获取歌单内容缓存
+     * @return id 不能用数组保存时返回 null，此时直接查询数据库
+     */
+    private MenuMusicCache.MenuContents getContents(String menuId) {
+        return menuMusicCache.get(menuId, id -> {
+            MusicMenu menu = musicMenuMapper.selectById(id);
+            return menu == null ? null : StringUtils.defaultString(menu.getTitle());
+        }, musicMenuRelationMapper::listContents);
+    }
+
+    /**
+     * 把歌单内容中 [from, to) 的音乐组装为列表，音乐信息从音乐缓存中批量获取
+     * @return 存在已删除的音乐（缓存已过期）时失效歌单缓存并返回 null
+     */
+    private List<MenuMusicVo> toMusicVos(String menuId, MenuMusicCache.MenuContents contents, int from, int to) {
+        if (from >= to) {
+            return new ArrayList<>();
+        }
+        long[] musicIds = contents.getMusicIds();
+        List<String> ids = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            ids.add(Long.toString(musicIds[i]));
+        }
+        Map<String, Music> musics = musicCache.getAll(ids, missing -> {
+            Map<String, Music> loaded = new HashMap<>();
+            for (Music music : musicMapper.selectBatchIds(missing)) {
+                loaded.put(music.getId(), music);
+            }
+            return loaded;
+        });
+
+        List<MenuMusicVo> records = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            Music music = musics.get(ids.get(i - from));
+            if (music == null) {
+                menuMusicCache.invalidate(menuId);
+                return null;
+            }
+            MenuMusicVo vo = new MenuMusicVo();
+            vo.setId(Long.toString(contents.getRelationIds()[i]));
+            vo.setPosition(contents.getPositions()[i]);
+            vo.setIndex(i);
+            vo.setMenuId(menuId);
+            vo.setMenuTitle(contents.getMenuTitle());
+            vo.setMusicId(music.getId());
+            vo.setMusicTitle(music.getTitle());
+            vo.setSinger(music.getSinger());
+            vo.setAlbum(music.getAlbum());
+            vo.setDuration(music.getDuration());
+            vo.setFileSize(music.getFileSize());
+            vo.setDownloadCount(music.getDownloadCount() == null ? null : String.valueOf(music.getDownloadCount()));
+            records.add(vo);
+        }
+        return records;
+    }
+
+    /**
+     * 删除歌单中的音乐关系（只删除该歌单中的），并减去歌单的音乐数量和时长
+     */
+    private void removeRelations(String menuId, List<String> ids) {
+        if (CollectionUtil.isEmpty(ids)) {
+            return;
+        }
+        List<String> musicIds = new ArrayList<>();
+        for (MusicMenuRelation relation : this.list(new LambdaQueryWrapper<MusicMenuRelation>()
+                .select(MusicMenuRelation::getMusicId)
+                .eq(MusicMenuRelation::getMenuId, menuId)
+                .in(MusicMenuRelation::getId, ids))) {
+            musicIds.add(relation.getMusicId());
+        }
+        if (musicIds.isEmpty()) {
+            return;
+        }
+        this.remove(new LambdaQueryWrapper<MusicMenuRelation>()
+                .eq(MusicMenuRelation::getMenuId, menuId)
+                .in(MusicMenuRelation::getId, ids));
+        musicMenuMapper.adjustStats(menuId, musicIds, -1);
+    }
+
+    /**
+     * 按给定的完整顺序重新编号，分批执行 CASE 更新
+     */
+    private void reorder(String menuId, List<String> order) {
+        List<MusicMenuRelation> current = musicMenuRelationMapper.listByIndex(menuId, 0, Integer.MAX_VALUE);
+        Set<String> currentIds = new HashSet<>();
+        for (MusicMenuRelation relation : current) {
+            currentIds.add(relation.getId());
+        }
+        if (order.size() != currentIds.size() || !currentIds.equals(new HashSet<>(order))) {
+            throw new ServiceException("调整后的顺序必须包含歌单中的全部音乐");
+        }
+
+        List<MusicMenuRelation> relations = new ArrayList<>(order.size());
+        for (int i = 0; i < order.size(); i++) {
+            MusicMenuRelation relation = new MusicMenuRelation();
+            relation.setId(order.get(i));
+            relation.setPosition(i * POSITION_STEP);
+            relations.add(relation);
+        }
+        for (int from = 0; from < relations.size(); from += UPDATE_BATCH_SIZE) {
+            musicMenuRelationMapper.updatePositions(menuId,
+                    relations.subList(from, Math.min(from + UPDATE_BATCH_SIZE, relations.size())));
+        }
+    }
+
+    /**
+     * 按给定顺序把音乐添加到歌单最前面（已存在的忽略），批量插入
+     */
+    private void addMusics(String menuId, List<String> musicIds) {
+        Set<String> existing = new HashSet<>();
+        for (MusicMenuRelation relation : this.list(new LambdaQueryWrapper<MusicMenuRelation>()
+                .select(MusicMenuRelation::getMusicId)
+                .eq(MusicMenuRelation::getMenuId, menuId)
+                .in(MusicMenuRelation::getMusicId, musicIds))) {
+            existing.add(relation.getMusicId());
+        }
+
+        List<String> toAdd = new ArrayList<>();
+        for (String musicId : musicIds) {
+            if (StringUtils.isNotBlank(musicId) && existing.add(musicId)) {
+                toAdd.add(musicId);
+            }
+        }
+        if (toAdd.isEmpty()) {
+            return;
+        }
+
+        Long minPosition = musicMenuRelationMapper.minPosition(menuId);
+        long first = (minPosition == null ? 0 : minPosition - POSITION_STEP) - (toAdd.size() - 1) * POSITION_STEP;
+        List<MusicMenuRelation> relations = new ArrayList<>(toAdd.size());
+        for (int i = 0; i < toAdd.size(); i++) {
+            MusicMenuRelation relation = new MusicMenuRelation();
+            relation.setMenuId(menuId);
+            relation.setMusicId(toAdd.get(i));
+            relation.setPosition(first + i * POSITION_STEP);
+            relations.add(relation);
+        }
+        this.saveBatch(relations, UPDATE_BATCH_SIZE);
+        musicMenuMapper.adjustStats(menuId, toAdd, 1);
+    }
+
+    /**
+     * 计算把第 start 首音乐移动到第 end 首时的新位置：取移动后前后两首音乐位置的中间值
+     * @return 前后两首音乐之间没有可用的间隔时返回 null
+     */
+    private Long positionAt(String menuId, int start, int end) {
+        // 移动后的前一首、后一首（不含被移动的音乐）
+        MusicMenuRelation previous;
+        MusicMenuRelation next;
+        if (start < end) {
+            List<MusicMenuRelation> neighbors = musicMenuRelationMapper.listByIndex(menuId, end, 2);
+            if (neighbors.isEmpty()) {
+                throw new ServiceException("调整后位置不存在");
+            }
+            previous = neighbors.get(0);
+            next = neighbors.size() > 1 ? neighbors.get(1) : null;
+        } else if (end == 0) {
+            previous = null;
+            next = musicMenuRelationMapper.listByIndex(menuId, 0, 1).get(0);
+        } else {
+            List<MusicMenuRelation> neighbors = musicMenuRelationMapper.listByIndex(menuId, end - 1, 2);
+            previous = neighbors.get(0);
+            next = neighbors.get(1);
+        }
+
+        if (previous == null) {
+            return next.getPosition() - POSITION_STEP;
+        }
+        if (next == null) {
+            return previous.getPosition() + POSITION_STEP;
+        }
+        long gap = next.getPosition() - previous.getPosition();
+        if (gap < 2) {
+            return null;
+        }
+        if (gap / 2 < REBALANCE_GAP) {
+            scheduleRebalance(menuId);
+        }
+        return previous.getPosition() + gap / 2;
+    }
+
+    /**
+     * 事务提交后在后台重新编号，恢复相邻音乐之间的间隔（同一歌单同时只安排一次）
+     */
+    private void scheduleRebalance(String menuId) {
+        if (!pendingRebalances.add(menuId)) {
+            return;
+        }
+        Runnable rebalance = () -> taskExecutor.execute(() -> {
+            try {
+                musicMenuRelationMapper.updateBatchPosition(menuId, POSITION_STEP);
+                menuMusicCache.invalidate(menuId);
+                log.info("歌单重新编号完成: {}", menuId);
+            } catch (Exception e) {
+                log.warn("歌单重新编号失败: {}", menuId, e);
+            } finally {
+                pendingRebalances.remove(menuId);
+            }
+        });
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    rebalance.run();
+                }
+            });
+        } else {
+            rebalance.run();
+        }
+    }
 }
@@ -6,15 +6,22 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.xioamila.common.cache.CountCache;
+import org.xioamila.common.cache.MenuMusicCache;
+import org.xioamila.common.utils.PageCursor;
 import org.xioamila.entity.MusicMenu;
 import org.xioamila.entity.MusicMenuRelation;
 import org.xioamila.mapper.MusicMenuMapper;
 import org.xioamila.mapper.MusicMenuRelationMapper;
 import org.xioamila.service.MusicMenuService;
+import org.xioamila.vo.CursorPage;
 import org.xioamila.vo.MenuVo;
 
+import java.util.Date;
 import java.util.List;
 
 @Slf4j
@@ -26,11 +33,41 @@ public class MusicMenuServiceImpl extends ServiceImpl<MusicMenuMapper, MusicMenu
 
     private MusicMenuMapper musicMenuMapper;
 
+    private CountCache countCache;
+
+    private MenuMusicCache menuMusicCache;
+
     @Override
     public Page<MenuVo> getPageList(Page page, MusicMenu musicMenu) {
         return musicMenuMapper.getPageList(page, musicMenu);
     }
 
+    @Override
+    public CursorPage<MenuVo> listByCursor(MusicMenu musicMenu, String cursor, int size, boolean withTotal) {
+        int pageSize = CursorPage.clampSize(size);
+        PageCursor pageCursor = PageCursor.decode(cursor);
+        List<MenuVo> rows = musicMenuMapper.listByCursor(musicMenu,
+                pageCursor == null ? null : new Date(pageCursor.getKey()),
+                pageCursor == null ? null : pageCursor.getId(),
+                pageSize + 1);
+        CursorPage<MenuVo> page = CursorPage.of(rows, pageSize, last -> new PageCursor(
+                last.getCreateTime() == null ? 0 : last.getCreateTime().getTime(), last.getId()).encode());
+        if (withTotal) {
+            String countKey = "menu:" + musicMenu.getCreateBy() + ":" + musicMenu.getTitle();
+            page.setTotal(countCache.get(countKey, () -> this.count(new LambdaQueryWrapper<MusicMenu>()
+                    .eq(MusicMenu::getCreateBy, musicMenu.getCreateBy())
+                    .like(StringUtils.isNotBlank(musicMenu.getTitle()), MusicMenu::getTitle, musicMenu.getTitle()))));
+        }
+        return page;
+    }
+
+    @Override
+    public boolean updateById(MusicMenu entity) {
+        // 歌单内容缓存中保存了歌单标题
+        menuMusicCache.invalidate(entity.getId());
+        return super.updateById(entity);
+    }
+
     @Override
     @Transactional
     public boolean deleteMenu(List<String> ids) {
@@ -39,9 +76,27 @@ public class MusicMenuServiceImpl extends ServiceImpl<MusicMenuMapper, MusicMenu
             musicMenuRelationMapper.delete(new LambdaQueryWrapper<MusicMenuRelation>().in(MusicMenuRelation::getMenuId, ids));
             // 删除菜单
             this.removeBatchByIds(ids);
+            menuMusicCache.invalidateAll(ids);
         }
 
         return true;
     }
 
+    /**
+     * 定时按关系表校正歌单的音乐数量和总时长，修复增量维护产生的偏差
+     * （与添加、删除并发执行时可能少计本次变更，下一次校正时修复）
+     */
+    @Scheduled(fixedDelayString = "${app.menu.reconcile-interval:3600000}",
+            initialDelayString = "${app.menu.reconcile-interval:3600000}")
+    public void reconcileStats() {
+        try {
+            int repaired = musicMenuMapper.reconcileStats();
+            if (repaired > 0) {
+                log.warn("歌单统计校正完成，修正歌单数量: {}", repaired);
+            }
+        } catch (Exception e) {
+            log.warn("歌单统计校正失败", e);
+        }
+    }
+
 }
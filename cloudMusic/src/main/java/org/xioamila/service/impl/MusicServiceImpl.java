@@ -8,75 +8,170 @@ import com.greatmap.modules.core.exception.ServiceException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 import org.xioamila.entity.Music;
+import org.xioamila.entity.MusicMenuRelation;
 import org.xioamila.mapper.MusicMapper;
+import org.xioamila.mapper.MusicMenuMapper;
+import org.xioamila.mapper.MusicMenuRelationMapper;
 import org.xioamila.service.MusicService;
+import org.xioamila.common.cache.CountCache;
+import org.xioamila.common.cache.MenuMusicCache;
+import org.xioamila.common.cache.MusicCache;
+import org.xioamila.common.search.MusicSearchIndex;
+import org.xioamila.common.stats.MusicCharts;
+import org.xioamila.common.stats.MusicCounter;
+import org.xioamila.common.storage.CoverStore;
+import org.xioamila.common.storage.MusicIngestor;
+import org.xioamila.common.storage.ResolvedFile;
+import org.xioamila.common.storage.ResolvedFileCache;
 import org.xioamila.common.utils.FileParseUtil;
+import org.xioamila.common.utils.PageCursor;
+import org.xioamila.vo.ChartVo;
+import org.xioamila.vo.CursorPage;
 
 import javax.servlet.http.HttpServletRequest;
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class MusicServiceImpl extends ServiceImpl<MusicMapper, Music> implements MusicService {
 
-    @Value("${music.file.path}")
-    private String musicFilePath;
-
-    @Value("${cover.file.path}")
-    private String coverFilePath;
+    // 已校验文件缓存键前缀
+    private static final String AUDIO_KEY_PREFIX = "audio:";
+    private static final String COVER_KEY_PREFIX = "cover:";
 
     private final MusicMapper musicMapper;
 
+    private final MusicIngestor musicIngestor;
+
+    private final CoverStore coverStore;
+
+    private final MusicSearchIndex musicSearchIndex;
+
+    private final CountCache countCache;
+
+    private final MusicCache musicCache;
+
+    private final ResolvedFileCache resolvedFileCache;
+
+    private final MusicCounter musicCounter;
+
+    private final MusicCharts musicCharts;
+
+    private final MusicMenuMapper musicMenuMapper;
+
+    private final MusicMenuRelationMapper musicMenuRelationMapper;
+
+    private final MenuMusicCache menuMusicCache;
+
+    @Override
+    public Page<Music> getPageList(Page<Music> page, Music music, String keyword) {
+        if (!hasSearchCondition(music, keyword) || !musicSearchIndex.isReady()) {
+            // 没有检索条件，或索引尚未加载完成
+            return musicMapper.getPageList(page, music, keyword);
+        }
+
+        List<String> ids = musicSearchIndex.search(keyword, music.getTitle(), music.getSinger());
+        page.setTotal(ids.size());
+        int from = (int) Math.min(Math.max(page.getCurrent() - 1, 0) * page.getSize(), ids.size());
+        int to = (int) Math.min(from + page.getSize(), ids.size());
+        List<String> pageIds = ids.subList(from, to);
+        page.setRecords(listInOrder(pageIds));
+        return page;
+    }
+
     @Override
-    public Page<Music> getPageList(Page<Music> page, Music music) {
-        return musicMapper.getPageList(page, music);
+    public CursorPage<Music> listByCursor(Music music, String keyword, String cursor, int size, boolean withTotal) {
+        int pageSize = CursorPage.clampSize(size);
+        PageCursor pageCursor = PageCursor.decode(cursor);
+
+        if (hasSearchCondition(music, keyword) && musicSearchIndex.isReady()) {
+            // 检索结果按相关度排序，游标记录已返回的条数（结果在内存中，不需要数据库偏移）
+            List<String> ids = musicSearchIndex.search(keyword, music.getTitle(), music.getSinger());
+            int from = pageCursor == null ? 0 : (int) Math.min(Math.max(pageCursor.getKey(), 0), ids.size());
+            int to = Math.min(from + pageSize, ids.size());
+
+            CursorPage<Music> page = new CursorPage<>();
+            page.setRecords(listInOrder(ids.subList(from, to)));
+            page.setHasMore(to < ids.size());
+            if (page.isHasMore()) {
+                page.setNextCursor(new PageCursor(to, null).encode());
+            }
+            if (withTotal) {
+                page.setTotal((long) ids.size());
+            }
+            return page;
+        }
+
+        List<Music> rows = musicMapper.listByCursor(music, keyword,
+                pageCursor == null ? null : new Date(pageCursor.getKey()),
+                pageCursor == null ? null : pageCursor.getId(),
+                pageSize + 1);
+        CursorPage<Music> page = CursorPage.of(rows, pageSize, last -> new PageCursor(
+                last.getCreateTime() == null ? 0 : last.getCreateTime().getTime(), last.getId()).encode());
+        if (withTotal) {
+            String countKey = "music:" + music.getTitle() + ":" + music.getSinger() + ":" + keyword;
+            page.setTotal(countCache.get(countKey, () -> musicMapper.countList(music, keyword)));
+        }
+        return page;
+    }
+
+    private static boolean hasSearchCondition(Music music, String keyword) {
+        return StringUtils.isNotBlank(keyword)
+                || StringUtils.isNotBlank(music.getTitle())
+                || StringUtils.isNotBlank(music.getSinger());
+    }
+
+    /**
+     * 按给定id顺序查询音乐（已删除的跳过）
+     */
+    private List<Music> listInOrder(List<String> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<String, Music> musics = this.listByIds(ids).stream()
+                .collect(Collectors.toMap(Music::getId, Function.identity()));
+        List<Music> records = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Music record = musics.get(id);
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        return records;
     }
 
     @Transactional
     @Override
     public String uploadMusic(MultipartFile file) {
+        Music music = null;
         try {
             // 验证文件是否为空
             if (file.isEmpty()) {
                 throw new ServiceException("上传失败：文件不能为空");
             }
 
-            // 验证文件类型
-            if (!FileParseUtil.isAudioFile(file)) {
-                throw new ServiceException("上传失败：文件不是有效的音频文件");
-            }
+            // 解析文件名信息
+            Map<String, Object> fileNameInfo = FileParseUtil.parseFileName(file.getOriginalFilename());
+            String title = (String) fileNameInfo.get("title");
+            String singer = (String) fileNameInfo.get("singer");
 
-            // 解析文件信息
-            Map<String, Object> fileInfo = FileParseUtil.parseMusicFile(file);
-            String fileExtension = (String) fileInfo.get("fileExtension");
-            String formattedFileSize = (String) fileInfo.get("fileSize");
-            String duration = (String) fileInfo.get("duration");
-            String title = (String) fileInfo.get("title");
-            String singer = (String) fileInfo.get("singer");
-            String album = (String) fileInfo.get("album"); // 专辑名称
-            byte[] coverImage = (byte[]) fileInfo.get("coverImage"); // 封面图片数据
-
-            String fileName = singer + " - " + title;
-
-            // 验证是否已存在该歌曲（title + singer）
+            // 验证是否已存在该歌曲（title + singer），在写入文件之前完成
             LambdaQueryWrapper<Music> queryWrapper = Wrappers.lambdaQuery(Music.class)
                     .eq(Music::getTitle, title)
                     .eq(Music::getSinger, singer);
@@ -86,65 +181,22 @@ public class MusicServiceImpl extends ServiceImpl<MusicMapper, Music> implements
                 throw new ServiceException("歌曲已存在：" + singer + " - " + title);
             }
 
-            // 保存音乐文件
-            // 获取项目根目录的绝对路径
-            String projectRoot = System.getProperty("user.dir");
-            String absoluteMusicPath = new File(projectRoot, musicFilePath).getAbsolutePath();
-            // 生成唯一文件名
-            String filePath = UUID.randomUUID().toString() + "." + fileExtension;
-            // 保存文件
-            File saveFile = new File(absoluteMusicPath + File.separator + filePath);
-            if (!saveFile.getParentFile().exists()) {
-                saveFile.getParentFile().mkdirs();
-            }
-            file.transferTo(saveFile);
-
-            // 保存封面图片
-            String coverUrl = null;
-            if (coverImage != null && coverImage.length > 0) {
-                // 封面保存目录
-                String absoluteCoverPath = new File(projectRoot, coverFilePath).getAbsolutePath();
-                // 创建目录
-                File coverDirectory = new File(absoluteCoverPath);
-                if (!coverDirectory.exists()) {
-                    coverDirectory.mkdirs();
-                }
-                // 生成唯一文件名
-                String coverFileName = UUID.randomUUID().toString() + ".jpg";
-                // 生成文件路径
-                String absoluteCoverFilePath = absoluteCoverPath + File.separator + coverFileName;
-
-                // 保存封面文件
-                try (FileOutputStream fos = new FileOutputStream(absoluteCoverFilePath)){
-                    fos.write(coverImage);
-                }
-
-                coverUrl = coverFileName;
+            // 保存并解析音乐文件
+            try {
+                music = musicIngestor.ingestUpload(file, fileNameInfo);
+            } catch (ServiceException e) {
+                throw new ServiceException("上传失败：" + e.getMessage());
             }
 
             // 保存音乐信息到数据库
-            Music music = new Music();
-            music.setTitle(title);
-            music.setSinger(singer);
-            music.setAlbum(album); // 设置专辑名称
-            music.setDuration(duration);
-            music.setFileType(fileExtension);
-            music.setFilePath(filePath);
-            music.setFileName(fileName);
-            music.setFileSize(formattedFileSize);
-            music.setCoverUrl(coverUrl); // 设置封面路径
-            music.setPlayCount(0);
-            music.setDownloadCount(0);
-
             boolean saveResult = this.save(music);
 
             if (saveResult) {
+                musicSearchIndex.index(music);
+                // 入库成功，文件不再需要清理
+                music = null;
                 return "音乐文件上传成功";
             } else {
-                // 如果数据库保存失败，删除已上传的文件
-                if (saveFile.exists()) {
-                    saveFile.delete();
-                }
                 throw new ServiceException("上传失败：数据库保存失败");
             }
 
@@ -156,14 +208,19 @@ public class MusicServiceImpl extends ServiceImpl<MusicMapper, Music> implements
         } catch (Exception e) {
             log.error("上传音乐文件发生未知错误", e);
             throw new ServiceException("上传失败：系统异常");
+        } finally {
+            // 上传失败时删除已写入的文件
+            if (music != null) {
+                musicIngestor.discard(music);
+            }
         }
     }
 
     @Override
-    public ResponseEntity<Resource> downloadMusic(String id) {
+    public ResponseEntity<Resource> downloadMusic(String id, HttpServletRequest request) {
         try {
-            // 查询音乐信息
-            Music music = this.getById(id);
+            // 查询音乐信息（优先读取缓存）
+            Music music = musicCache.get(id, this::getById);
             if (music == null) {
                 log.warn("音乐文件不存在, id: {}", id);
                 return ResponseEntity.notFound().build();
@@ -176,14 +233,9 @@ public class MusicServiceImpl extends ServiceImpl<MusicMapper, Music> implements
                 return ResponseEntity.notFound().build();
             }
 
-            // 获取文件的绝对路径
-            String projectRoot = System.getProperty("user.dir");
-            String absoluteMusicPath = new File(projectRoot, musicFilePath).getAbsolutePath();
-            filePath = absoluteMusicPath + File.separator + filePath;
-
-            // 创建文件对象并验证
-            File file = new File(filePath);
-            if (!FileParseUtil.isAudioFile(file)) {
+            // 解析并验证文件（优先读取缓存，文件未变化时不再检测类型）
+            ResolvedFile file = resolveMusicFile(id, filePath);
+            if (file == null || file.getMimeType() == null || !file.getMimeType().startsWith("audio/")) {
                 log.warn("音乐文件无效, path: {}, id: {}", filePath, id);
                 return ResponseEntity.notFound().build();
             }
@@ -195,10 +247,14 @@ public class MusicServiceImpl extends ServiceImpl<MusicMapper, Music> implements
                     music.getFileType()
             );
 
-            log.info("准备下载文件: {} -> {}", filePath, fileName);
+            log.info("准备下载文件: {} -> {}", file.getPath(), fileName);
 
-            // 创建下载响应
-            return FileParseUtil.createDownloadResponse(file, fileName);
+            // 创建下载响应，成功时计数
+            ResponseEntity<Resource> response = FileParseUtil.createDownloadResponse(file, fileName, request);
+            if (response.getStatusCode().is2xxSuccessful() && musicCounter.recordDownload(id, request)) {
+                musicCharts.recordDownload(id);
+            }
+            return response;
 
         } catch (Exception e) {
             log.error("下载音乐文件失败, id: {}", id, e);
@@ -209,8 +265,8 @@ public class MusicServiceImpl extends ServiceImpl<MusicMapper, Music> implements
     @Override
     public ResponseEntity<Resource> playMusic(String id, HttpServletRequest request) {
         try {
-            // 查询音乐信息
-            Music music = this.getById(id);
+            // 查询音乐信息（优先读取缓存）
+            Music music = musicCache.get(id, this::getById);
             if (music == null) {
                 log.warn("音乐文件不存在, id: {}", id);
                 return ResponseEntity.notFound().build();
@@ -223,22 +279,21 @@ public class MusicServiceImpl extends ServiceImpl<MusicMapper, Music> implements
                 return ResponseEntity.notFound().build();
             }
 
-            // 获取文件的绝对路径
-            String projectRoot = System.getProperty("user.dir");
-            String absoluteMusicPath = new File(projectRoot, musicFilePath).getAbsolutePath();
-            filePath = absoluteMusicPath + File.separator + filePath;
-
-            // 创建文件对象并验证
-            File file = new File(filePath);
-            if (!file.exists() || !file.isFile()) {
+            // 解析并验证文件（优先读取缓存）
+            ResolvedFile file = resolveMusicFile(id, filePath);
+            if (file == null) {
                 log.warn("音乐文件不存在或不是文件, path: {}, id: {}", filePath, id);
                 return ResponseEntity.notFound().build();
             }
 
-            log.info("准备播放音乐: {} -> {}", music.getTitle(), filePath);
+            log.info("准备播放音乐: {} -> {}", music.getTitle(), file.getPath());
 
-            // 使用工具类创建播放响应
-            return FileParseUtil.createPlayResponse(file, music, request);
+            // 使用工具类创建播放响应，成功时计数
+            ResponseEntity<Resource> response = FileParseUtil.createPlayResponse(file, music, request);
+            if (response.getStatusCode().is2xxSuccessful() && musicCounter.recordPlay(id, request)) {
+                musicCharts.recordPlay(id);
+            }
+            return response;
 
         } catch (Exception e) {
             log.error("播放音乐文件失败, id: {}", id, e);
@@ -246,6 +301,37 @@ public class MusicServiceImpl extends ServiceImpl<MusicMapper, Music> implements
         }
     }
 
+    @Override
+    public List<ChartVo> getCharts(String period, int size) {
+        MusicCharts.Period chartPeriod;
+        try {
+            chartPeriod = MusicCharts.Period.valueOf(period.trim().toUpperCase());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new ServiceException("无效的榜单周期：" + period);
+        }
+        int limit = Math.max(1, Math.min(size, MusicCharts.MAX_SIZE));
+
+        List<ChartVo> result = new ArrayList<>(limit);
+        for (MusicCharts.Entry entry : musicCharts.getChart(chartPeriod)) {
+            // 已删除的音乐不再出现在榜单中
+            Music music = musicCache.get(entry.getMusicId(), this::getById);
+            if (music == null) {
+                continue;
+            }
+            ChartVo vo = new ChartVo();
+            vo.setRank(result.size() + 1);
+            vo.setScore(entry.getScore());
+            vo.setPlays(entry.getPlays());
+            vo.setDownloads(entry.getDownloads());
+            vo.setMusic(music);
+            result.add(vo);
+            if (result.size() >= limit) {
+                break;
+            }
+        }
+        return result;
+    }
+
     @Override
     @Transactional
     public boolean updateMusic(Music music) {
@@ -260,7 +346,14 @@ public class MusicServiceImpl extends ServiceImpl<MusicMapper, Music> implements
             throw new ServiceException("歌曲已存在：" + music.getSinger() + " - " + music.getTitle());
         }
 
-        return this.updateById(music);
+        boolean updated = this.updateById(music);
+        musicCache.invalidate(music.getId());
+        resolvedFileCache.invalidate(AUDIO_KEY_PREFIX + music.getId());
+        if (updated) {
+            // 只更新了部分字段，按完整记录重建索引
+            musicSearchIndex.index(this.getById(music.getId()));
+        }
+        return updated;
     }
 
     @Override
@@ -273,12 +366,26 @@ public class MusicServiceImpl extends ServiceImpl<MusicMapper, Music> implements
         }
 
         try {
-            // 删除音乐文件
-            deleteMusicFile(music.getFilePath());
-            // 删除音乐封面文件
-            deleteCoverFile(music.getCoverUrl());
+            // 删除音乐文件（相同内容的其他音乐仍在引用时保留）
+            musicIngestor.release(music.getFilePath(), id);
+            // 删除音乐封面文件（其他音乐仍在引用时保留）
+            coverStore.release(music.getCoverUrl(), id);
+
+            // 从包含该音乐的歌单中减去数量和时长，并删除歌单关系
+            for (MusicMenuRelation relation : musicMenuRelationMapper.selectList(new LambdaQueryWrapper<MusicMenuRelation>()
+                    .select(MusicMenuRelation::getMenuId)
+                    .eq(MusicMenuRelation::getMusicId, id))) {
+                menuMusicCache.invalidate(relation.getMenuId());
+            }
+            musicMenuMapper.decrementByMusic(id);
+            musicMenuRelationMapper.delete(new LambdaQueryWrapper<MusicMenuRelation>()
+                    .eq(MusicMenuRelation::getMusicId, id));
 
             // 删除数据库记录
+            musicCache.invalidate(id);
+            resolvedFileCache.invalidate(AUDIO_KEY_PREFIX + id);
+            musicCounter.forget(id);
+            musicSearchIndex.remove(id);
             return this.removeById(id);
 
         } catch (ServiceException e) {
@@ -288,90 +395,22 @@ public class MusicServiceImpl extends ServiceImpl<MusicMapper, Music> implements
     }
 
     /**
-     * 删除音乐文件 - 失败时抛出异常，触发事务回滚
+     * 解析音乐文件（以音乐id缓存），缓存中没有或文件变化时按内容检测类型
+     * @return 文件不存在或不是普通文件时返回 null
      */
-    private void deleteMusicFile(String filePath) throws ServiceException {
-        try {
-            if (StringUtils.isBlank(filePath)) {
-                return; // 没有文件路径，直接返回
-            }
-
-            // 获取项目的绝对基础路径
-            String projectRoot = System.getProperty("user.dir");
-            String absoluteMusicPath = new File(projectRoot, musicFilePath).getAbsolutePath();
-            Path basePath = Paths.get(absoluteMusicPath).toAbsolutePath().normalize();
-
-            // 构建完整文件路径
-            Path fileFullPath = basePath.resolve(filePath).normalize();
-
-            // 路径安全检查 - 修正：比较两个绝对路径
-            if (!fileFullPath.startsWith(basePath)) {
-                log.error("非法文件路径尝试: basePath={}, filePath={}", basePath, fileFullPath);
-                throw new ServiceException("非法文件路径: " + filePath);
-            }
-
-            // 检查文件是否存在且是普通文件
-            if (Files.exists(fileFullPath) && !Files.isRegularFile(fileFullPath)) {
-                throw new ServiceException("目标路径不是普通文件: " + filePath);
-            }
-
-            boolean deleted = Files.deleteIfExists(fileFullPath);
-            if (!deleted) {
-                log.warn("音乐文件不存在: {}", fileFullPath);
-            }
-            log.info("音乐文件删除成功: {}", fileFullPath);
-
-        } catch (IOException e) {
-            log.error("删除音乐文件失败: {}", filePath, e);
-            throw new ServiceException("删除音乐文件失败: " + e.getMessage(), e);
-        }
+    private ResolvedFile resolveMusicFile(String id, String filePath) throws IOException {
+        return resolvedFileCache.resolve(AUDIO_KEY_PREFIX + id,
+                () -> musicIngestor.getMusicDirectory().toPath().resolve(filePath),
+                FileParseUtil::detectFileType);
     }
 
-    /**
-     * 删除音乐封面文件 - 失败时抛出异常，触发事务回滚
-     */
-    private void deleteCoverFile(String filePath) throws ServiceException {
-        try {
-            if (StringUtils.isBlank(filePath)) {
-                return; // 没有文件路径，直接返回
-            }
-
-            // 获取项目的绝对基础路径
-            String projectRoot = System.getProperty("user.dir");
-            String absoluteCoverPath = new File(projectRoot, coverFilePath).getAbsolutePath();
-            Path basePath = Paths.get(absoluteCoverPath).toAbsolutePath().normalize();
 
-            // 构建完整文件路径
-            Path fileFullPath = basePath.resolve(filePath).normalize();
-
-            // 路径安全检查 - 修正：比较两个绝对路径
-            if (!fileFullPath.startsWith(basePath)) {
-                log.error("非法文件路径尝试: basePath={}, filePath={}", basePath, fileFullPath);
-                throw new ServiceException("非法文件路径: " + filePath);
-            }
-
-            // 检查文件是否存在且是普通文件
-            if (Files.exists(fileFullPath) && !Files.isRegularFile(fileFullPath)) {
-                throw new ServiceException("目标路径不是普通文件: " + filePath);
-            }
-
-            boolean deleted = Files.deleteIfExists(fileFullPath);
-            if (!deleted) {
-                log.warn("音乐封面文件不存在: {}", fileFullPath);
-            }
-            log.info("音乐封面文件删除成功: {}", fileFullPath);
-
-        } catch (IOException e) {
-            log.error("删除音乐封面文件失败: {}", filePath, e);
-            throw new ServiceException("删除音乐封面文件失败: " + e.getMessage(), e);
-        }
-    }
 
     @Override
-    public ResponseEntity<Resource> getCoverById(String id) {
+    public ResponseEntity<Resource> getCoverById(String id, Integer size, HttpServletRequest request) {
         try {
-            // 查询音乐信息
-            Music music = this.getById(id);
+            // 查询音乐信息（优先读取缓存）
+            Music music = musicCache.get(id, this::getById);
             if (music == null) {
                 log.warn("音乐文件不存在, id: {}", id);
                 return ResponseEntity.notFound().build();
@@ -384,25 +423,15 @@ public class MusicServiceImpl extends ServiceImpl<MusicMapper, Music> implements
                 return ResponseEntity.notFound().build();
             }
 
-            // 获取封面文件的绝对路径
-            String projectRoot = System.getProperty("user.dir");
-            String absoluteCoverPath = new File(projectRoot, coverFilePath).getAbsolutePath();
-            filePath = absoluteCoverPath + File.separator + filePath;
-
-            // 创建文件对象并验证
-            File coverFile = new File(filePath);
-
-            if (!coverFile.exists()) {
+            // 解析并验证文件（按请求尺寸使用缩略图；以实际文件路径缓存，缩略图生成后自动切换）
+            Path coverPath = coverStore.resolve(filePath, size).toPath();
+            ResolvedFile coverFile = resolvedFileCache.resolve(COVER_KEY_PREFIX + coverPath, () -> coverPath,
+                    path -> coverStore.getContentType(path.toFile()).toString());
+            if (coverFile == null) {
                 return ResponseEntity.notFound().build();
             }
 
-            FileSystemResource resource = new FileSystemResource(coverFile);
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.IMAGE_JPEG); // 根据实际格式调整
-
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(resource);
+            return FileParseUtil.createImageResponse(coverFile, MediaType.parseMediaType(coverFile.getMimeType()), request);
 
         } catch (Exception e) {
             log.error("获取音乐封面文件失败, id: {}", id, e);
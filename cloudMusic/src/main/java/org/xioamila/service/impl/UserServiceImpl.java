@@ -9,17 +9,22 @@ import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.xioamila.common.cache.CountCache;
+import org.xioamila.common.utils.PageCursor;
 import org.xioamila.common.utils.SecurityUtil;
 import org.xioamila.common.utils.TokenInfo;
 import org.xioamila.dto.LoginDto;
 import org.xioamila.dto.RegisterDto;
 import org.xioamila.entity.User;
+import org.xioamila.vo.CursorPage;
 import org.xioamila.vo.LoginVo;
 import org.xioamila.vo.Result;
 import org.xioamila.mapper.UserMapper;
 import org.xioamila.service.UserService;
 import org.xioamila.common.utils.PasswordUtil;
 
+import java.util.Date;
+
 @Slf4j
 @Service
 @AllArgsConstructor
@@ -27,6 +32,8 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
 
     private PasswordUtil passwordUtil;
 
+    private CountCache countCache;
+
     @Override
     public Result<LoginVo> login(LoginDto loginDto) {
         try {
@@ -138,4 +145,29 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
 
         return this.updateById(user);
     }
+
+    @Override
+    public CursorPage<User> listByCursor(String nickname, String cursor, int size, boolean withTotal) {
+        int pageSize = CursorPage.clampSize(size);
+        PageCursor pageCursor = PageCursor.decode(cursor);
+
+        LambdaQueryWrapper<User> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.like(StringUtils.isNotBlank(nickname), User::getNickname, nickname);
+        if (pageCursor != null) {
+            Date cursorTime = new Date(pageCursor.getKey());
+            queryWrapper.and(wrapper -> wrapper.lt(User::getCreateTime, cursorTime)
+                    .or(w -> w.eq(User::getCreateTime, cursorTime).lt(User::getId, pageCursor.getId())));
+        }
+        queryWrapper.orderByDesc(User::getCreateTime)
+                .orderByDesc(User::getId)
+                .last("LIMIT " + (pageSize + 1));
+
+        CursorPage<User> page = CursorPage.of(this.list(queryWrapper), pageSize, last -> new PageCursor(
+                last.getCreateTime() == null ? 0 : last.getCreateTime().getTime(), last.getId()).encode());
+        if (withTotal) {
+            page.setTotal(countCache.get("user:" + nickname, () -> this.count(new LambdaQueryWrapper<User>()
+                    .like(StringUtils.isNotBlank(nickname), User::getNickname, nickname))));
+        }
+        return page;
+    }
 }
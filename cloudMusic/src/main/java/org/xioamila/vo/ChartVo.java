@@ -0,0 +1,25 @@
+package org.xioamila.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import org.xioamila.entity.Music;
+
+@Data
+@Schema(description = "排行榜Vo")
+public class ChartVo {
+
+    @Schema(description = "名次")
+    private Integer rank;
+
+    @Schema(description = "得分（播放次数 + 下载次数 × 2）")
+    private Long score;
+
+    @Schema(description = "周期内播放次数")
+    private Long plays;
+
+    @Schema(description = "周期内下载次数")
+    private Long downloads;
+
+    @Schema(description = "音乐信息")
+    private Music music;
+}
@@ -0,0 +1,53 @@
+package org.xioamila.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+@Data
+@Schema(description = "游标分页结果")
+public class CursorPage<T> {
+
+    // 每页最大数量
+    public static final int MAX_SIZE = 1000;
+
+    @Schema(description = "数据列表")
+    private List<T> records;
+
+    @Schema(description = "下一页游标，为空表示没有更多数据")
+    private String nextCursor;
+
+    @Schema(description = "是否还有更多数据")
+    private boolean hasMore;
+
+    @Schema(description = "总数（仅在请求时返回，来自短时缓存）")
+    private Long total;
+
+    /**
+     * 将每页数量限制在 1 ~ MAX_SIZE 之间
+     */
+    public static int clampSize(int size) {
+        return Math.max(1, Math.min(size, MAX_SIZE));
+    }
+
+    /**
+     * 根据多查询一条的结果构建分页
+     * @param rows 按 size + 1 查询的结果
+     * @param size 每页数量
+     * @param cursorOf 根据一页中最后一条记录生成下一页游标
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int size, Function<T, String> cursorOf) {
+        CursorPage<T> page = new CursorPage<>();
+        boolean hasMore = rows.size() > size;
+        List<T> records = hasMore ? new ArrayList<>(rows.subList(0, size)) : rows;
+        page.setRecords(records);
+        page.setHasMore(hasMore);
+        if (hasMore) {
+            page.setNextCursor(cursorOf.apply(records.get(records.size() - 1)));
+        }
+        return page;
+    }
+}
@@ -0,0 +1,85 @@
+package org.xioamila.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Data
+@Schema(description = "批量导入任务Vo")
+public class ImportJobVo {
+
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_FINISHED = "FINISHED";
+
+    @Schema(description = "任务id")
+    private String jobId;
+
+    @Schema(description = "任务状态（RUNNING/FINISHED）")
+    private volatile String status = STATUS_RUNNING;
+
+    @Schema(description = "文件总数")
+    private volatile int total;
+
+    @Schema(description = "已解析数量（解析成功、等待或已经入库）")
+    private final AtomicInteger parsed = new AtomicInteger();
+
+    @Schema(description = "成功数量")
+    private final AtomicInteger succeeded = new AtomicInteger();
+
+    @Schema(description = "失败数量")
+    private final AtomicInteger failed = new AtomicInteger();
+
+    @Schema(description = "已处理的文件字节数")
+    private final AtomicLong processedBytes = new AtomicLong();
+
+    @Schema(description = "开始时间（毫秒）")
+    private long startTime = System.currentTimeMillis();
+
+    @Schema(description = "结束时间（毫秒）")
+    private volatile Long endTime;
+
+    @Schema(description = "失败明细")
+    private final List<String> failures = new CopyOnWriteArrayList<>();
+
+    @Schema(description = "已处理数量")
+    public int getProcessed() {
+        return succeeded.get() + failed.get();
+    }
+
+    @Schema(description = "耗时（毫秒）")
+    public long getElapsedMillis() {
+        return (endTime != null ? endTime : System.currentTimeMillis()) - startTime;
+    }
+
+    @Schema(description = "吞吐量（文件/秒）")
+    public double getFilesPerSecond() {
+        long elapsed = Math.max(getElapsedMillis(), 1);
+        return getProcessed() * 1000.0 / elapsed;
+    }
+
+    @Schema(description = "吞吐量（MB/秒）")
+    public double getMegabytesPerSecond() {
+        long elapsed = Math.max(getElapsedMillis(), 1);
+        return processedBytes.get() * 1000.0 / elapsed / (1024 * 1024);
+    }
+
+    /**
+     * 记录单个文件失败
+     */
+    public void fail(String fileName, String reason) {
+        failed.incrementAndGet();
+        failures.add(fileName + ": " + reason);
+    }
+
+    /**
+     * 标记任务结束
+     */
+    public void finish() {
+        endTime = System.currentTimeMillis();
+        status = STATUS_FINISHED;
+    }
+}
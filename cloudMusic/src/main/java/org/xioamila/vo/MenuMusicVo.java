@@ -10,8 +10,11 @@ public class MenuMusicVo {
     @Schema(description = "id")
     private String id;
 
-    @Schema(description = "排序")
-    private String position;
+    @Schema(description = "排序（带间隔的数值，只用于比较先后）")
+    private Long position;
+
+    @Schema(description = "在歌单中的序号（从0开始，调整顺序时使用；按条件筛选时为空）")
+    private Integer index;
 
     @Schema(description = "菜单id")
     private String menuId;
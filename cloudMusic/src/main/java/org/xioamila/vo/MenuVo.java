@@ -10,4 +10,7 @@ public class MenuVo extends MusicMenu {
 
     @Schema(description = "musicCount")
     private String musicCount;
+
+    @Schema(description = "音乐总时长（秒）")
+    private Long totalDuration;
 }
\ No newline at end of file
@@ -0,0 +1,96 @@
+package org.xioamila.common;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * 基准测试工具：预热后计时多轮，取最快一轮的单次耗时
+ * 基准测试默认跳过，使用 mvn test -Dbenchmark=true 运行，结果输出到标准输出
+ */
+public final class Benchmark {
+
+    /**
+     * 启用基准测试的系统属性（配合 @EnabledIfSystemProperty(named = ENABLED, matches = "true")）
+     */
+    public static final String ENABLED = "benchmark";
+
+    private static final int WARMUP_ROUNDS = 3;
+
+    private static final int MEASURE_ROUNDS = 5;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private Benchmark() {
+    }
+
+    /**
+     * 被测操作
+     */
+    @FunctionalInterface
+    public interface Operation {
+        void run() throws Exception;
+    }
+
+    /**
+     * 单次操作的耗时（纳秒）
+     * @param operations 每轮执行次数
+     */
+    public static double nanosPerOp(int operations, Operation operation) throws Exception {
+        return measure(operations, operation, Benchmark::nanoTime);
+    }
+
+    /**
+     * 单次操作占用当前线程的 CPU 时间（纳秒）
+     */
+    public static double cpuNanosPerOp(int operations, Operation operation) throws Exception {
+        return measure(operations, operation, THREADS::getCurrentThreadCpuTime);
+    }
+
+    /**
+     * 单次操作在当前线程分配的堆内存（字节），取最后一轮（已完成预热）
+     */
+    public static double allocatedBytesPerOp(int operations, Operation operation) throws Exception {
+        long threadId = Thread.currentThread().getId();
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            repeat(operations, operation);
+        }
+        long start = THREADS.getThreadAllocatedBytes(threadId);
+        repeat(operations, operation);
+        return (double) (THREADS.getThreadAllocatedBytes(threadId) - start) / operations;
+    }
+
+    /**
+     * 输出一行结果
+     */
+    public static void report(String name, String format, Object... args) {
+        System.out.printf("[benchmark] %-48s %s%n", name, String.format(format, args));
+    }
+
+    private static double measure(int operations, Operation operation, Clock clock) throws Exception {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            repeat(operations, operation);
+        }
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < MEASURE_ROUNDS; round++) {
+            long start = clock.now();
+            repeat(operations, operation);
+            best = Math.min(best, clock.now() - start);
+        }
+        return (double) best / operations;
+    }
+
+    private static void repeat(int operations, Operation operation) throws Exception {
+        for (int i = 0; i < operations; i++) {
+            operation.run();
+        }
+    }
+
+    private static long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @FunctionalInterface
+    private interface Clock {
+        long now();
+    }
+}
@@ -0,0 +1,127 @@
+package org.xioamila.common.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.xioamila.entity.MusicMenuRelation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MenuMusicCacheTest {
+
+    private static final String MENU_ID = "1";
+
+    private final MenuMusicCache cache = new MenuMusicCache(1000);
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void indexAfterSeeksLikeOrderByPositionAndId() {
+        // 与 ORDER BY position, id 一致：位置相同时 id 按字符串比较（"10" 排在 "9" 之前）
+        MenuMusicCache.MenuContents contents = MenuMusicCache.MenuContents.of("歌单", Arrays.asList(
+                relation("5", 0), relation("10", 1024), relation("9", 1024), relation("7", 2048)));
+
+        assertThat(contents.indexAfter(-1, null)).isEqualTo(0);
+        assertThat(contents.indexAfter(0, "5")).isEqualTo(1);
+        assertThat(contents.indexAfter(1024, "10")).isEqualTo(2);
+        assertThat(contents.indexAfter(1024, "9")).isEqualTo(3);
+        // 游标所在的音乐已被删除时，从下一首继续
+        assertThat(contents.indexAfter(1024, "95")).isEqualTo(3);
+        assertThat(contents.indexAfter(1024, null)).isEqualTo(3);
+        assertThat(contents.indexAfter(1500, "1")).isEqualTo(3);
+        assertThat(contents.indexAfter(2048, "7")).isEqualTo(4);
+    }
+
+    @Test
+    void nonNumericIdsAreNotCached() {
+        assertThat(MenuMusicCache.MenuContents.of("歌单", Collections.singletonList(relation("a1", 0)))).isNull();
+        assertThat(MenuMusicCache.MenuContents.of("歌单", Collections.singletonList(relation("007", 0)))).isNull();
+
+        assertThat(cache.get(MENU_ID, id -> "歌单", id -> load(relation("a1", 0)))).isNull();
+        cache.get(MENU_ID, id -> "歌单", id -> load(relation("a1", 0)));
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void loadsOnceUntilInvalidated() {
+        MenuMusicCache.MenuContents first = cache.get(MENU_ID, id -> "歌单", id -> load(relation("5", 0)));
+        assertThat(cache.get(MENU_ID, id -> "歌单", id -> load(relation("5", 0)))).isSameAs(first);
+        assertThat(first.getMusicIds()).containsExactly(1005);
+        assertThat(loads).hasValue(1);
+
+        cache.invalidate(MENU_ID);
+
+        assertThat(cache.get(MENU_ID, id -> "歌单", id -> load(relation("5", 0), relation("6", 1024))).size())
+                .isEqualTo(2);
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void missingMenuIsEmpty() {
+        MenuMusicCache.MenuContents contents = cache.get(MENU_ID, id -> null, id -> load());
+
+        assertThat(contents.size()).isZero();
+        assertThat(contents.getMenuTitle()).isNull();
+    }
+
+    @Test
+    void invalidateInTransactionAgainAfterCompletion() {
+        cache.get(MENU_ID, id -> "歌单", id -> load(relation("5", 0)));
+        TransactionSynchronizationManager.initSynchronization();
+
+        cache.invalidate(MENU_ID);
+        // 提交前的并发请求重新加载了旧数据
+        cache.get(MENU_ID, id -> "歌单", id -> load(relation("5", 0)));
+        assertThat(loads).hasValue(2);
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+
+        MenuMusicCache.MenuContents contents = cache.get(MENU_ID, id -> "歌单",
+                id -> load(relation("5", 0), relation("6", 1024)));
+        assertThat(contents.size()).isEqualTo(2);
+        assertThat(loads).hasValue(3);
+    }
+
+    @Test
+    void invalidateAllInvalidatesEachMenu() {
+        cache.get("1", id -> "歌单1", id -> load(relation("5", 0)));
+        cache.get("2", id -> "歌单2", id -> load(relation("6", 0)));
+
+        cache.invalidateAll(Arrays.asList("1", "2"));
+
+        cache.get("1", id -> "歌单1", id -> load(relation("5", 0)));
+        cache.get("2", id -> "歌单2", id -> load(relation("6", 0)));
+        assertThat(loads).hasValue(4);
+    }
+
+    private List<MusicMenuRelation> load(MusicMenuRelation... relations) {
+        loads.incrementAndGet();
+        return new ArrayList<>(Arrays.asList(relations));
+    }
+
+    private static MusicMenuRelation relation(String id, long position) {
+        MusicMenuRelation relation = new MusicMenuRelation();
+        relation.setId(id);
+        relation.setMenuId(MENU_ID);
+        relation.setMusicId(id.matches("\\d+") ? String.valueOf(1000 + Long.parseLong(id)) : id);
+        relation.setPosition(position);
+        return relation;
+    }
+}
@@ -0,0 +1,91 @@
+package org.xioamila.common.config;
+
+import org.apache.catalina.connector.Connector;
+import org.apache.coyote.http11.AbstractHttp11Protocol;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.xioamila.common.Benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 压缩策略：按旧配置压缩音频时，每 MB 响应额外消耗的 CPU 时间
+ * 音频编码后的数据接近随机数据，用随机字节模拟；与 Tomcat 的 GzipOutputFilter 一样按 8KB 写入默认级别的 GZIPOutputStream
+ */
+@EnabledIfSystemProperty(named = Benchmark.ENABLED, matches = "true")
+class CompressionConfigBenchmarkTest {
+
+    // 旧的 server.compression.mime-types
+    private static final String LEGACY_MIME_TYPES = "text/html,text/xml,text/plain,text/css,text/javascript,"
+            + "application/javascript,application/json,audio/mpeg,audio/flac,audio/wav,audio/aac,audio/mp4,audio/ogg,audio/x-m4a";
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private static final int RESPONSE_SIZE = 8 * 1024 * 1024;
+
+    private static final double MB = 1024 * 1024;
+
+    @Test
+    void cpuSavedPerStreamedMegabyte() throws Exception {
+        Connector connector = new Connector("HTTP/1.1");
+        AbstractHttp11Protocol<?> protocol = (AbstractHttp11Protocol<?>) connector.getProtocolHandler();
+        protocol.setCompressibleMimeType(LEGACY_MIME_TYPES);
+        TomcatServletWebServerFactory factory = new TomcatServletWebServerFactory();
+        new CompressionConfig().compressionPolicyCustomizer().customize(factory);
+        factory.getTomcatConnectorCustomizers().forEach(customizer -> customizer.customize(connector));
+        assertThat(protocol.getCompressibleMimeTypes())
+                .contains("application/json", "text/html")
+                .noneMatch(mimeType -> mimeType.startsWith("audio/"));
+
+        byte[] audio = new byte[RESPONSE_SIZE];
+        new Random(1).nextBytes(audio);
+        CountingOutputStream socket = new CountingOutputStream();
+        gzip(audio, socket);
+        long gzipBytes = socket.count;
+
+        double identity = Benchmark.cpuNanosPerOp(4, () -> write(audio, socket));
+        double gzip = Benchmark.cpuNanosPerOp(4, () -> gzip(audio, socket));
+
+        double megabytes = RESPONSE_SIZE / MB;
+        Benchmark.report("audio response: identity", "%10.0f ns CPU/MB", identity / megabytes);
+        Benchmark.report("audio response: gzip (legacy mime-types)", "%10.0f ns CPU/MB, output %.1f%% of input",
+                gzip / megabytes, gzipBytes * 100.0 / RESPONSE_SIZE);
+        Benchmark.report("audio response: CPU saved", "%10.0f ns CPU/MB", (gzip - identity) / megabytes);
+    }
+
+    private static void gzip(byte[] data, OutputStream socket) throws IOException {
+        try (GZIPOutputStream out = new GZIPOutputStream(socket, CHUNK_SIZE)) {
+            write(data, out);
+        }
+    }
+
+    private static void write(byte[] data, OutputStream out) throws IOException {
+        for (int offset = 0; offset < data.length; offset += CHUNK_SIZE) {
+            out.write(data, offset, Math.min(CHUNK_SIZE, data.length - offset));
+        }
+    }
+
+    /**
+     * 只统计字节数的输出流（代替 socket）
+     */
+    private static class CountingOutputStream extends OutputStream {
+
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
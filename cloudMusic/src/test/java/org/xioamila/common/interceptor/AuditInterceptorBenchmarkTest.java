@@ -0,0 +1,161 @@
+package org.xioamila.common.interceptor;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.xioamila.common.Benchmark;
+import org.xioamila.common.context.UserContext;
+import org.xioamila.common.utils.SecurityUtil;
+import org.xioamila.entity.Music;
+import org.xioamila.entity.User;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.Date;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 单条插入（Music）时审计字段填充的开销：旧的反射实现（已去掉 System.out.println）与按类缓存 MethodHandle 的 AuditInterceptor
+ */
+@EnabledIfSystemProperty(named = Benchmark.ENABLED, matches = "true")
+class AuditInterceptorBenchmarkTest {
+
+    private static final int OPERATIONS = 1_000_000;
+
+    private final Configuration configuration = new Configuration();
+
+    // 不执行 SQL 的 Executor
+    private final Executor executor = (Executor) Proxy.newProxyInstance(Executor.class.getClassLoader(),
+            new Class<?>[]{Executor.class}, (proxy, method, args) -> 0);
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setId("1001");
+        UserContext.setUser(user);
+    }
+
+    @AfterEach
+    void tearDown() {
+        UserContext.clear();
+    }
+
+    @Test
+    void overheadPerInsert() throws Throwable {
+        MappedStatement insert = new MappedStatement.Builder(configuration, "test.insert",
+                new StaticSqlSource(configuration, "SELECT 1"), SqlCommandType.INSERT).build();
+        Music music = new Music();
+        Invocation invocation = new Invocation(executor,
+                Executor.class.getMethod("update", MappedStatement.class, Object.class),
+                new Object[]{insert, music});
+
+        AuditInterceptor interceptor = new AuditInterceptor();
+        LegacyAuditInterceptor legacyInterceptor = new LegacyAuditInterceptor();
+        interceptor.intercept(invocation);
+        assertThat(music.getCreateBy()).isEqualTo("1001");
+        music.setCreateBy(null);
+        legacyInterceptor.intercept(invocation);
+        assertThat(music.getCreateBy()).isEqualTo("1001");
+
+        double baseline = Benchmark.nanosPerOp(OPERATIONS, invocation::proceed);
+        // 旧实现在父类字段上每次都抛出 NoSuchFieldException，单次耗时较长，减少执行次数
+        double legacy = Benchmark.nanosPerOp(OPERATIONS / 20, () -> legacyInterceptor.intercept(invocation));
+        double current = Benchmark.nanosPerOp(OPERATIONS, () -> {
+            try {
+                interceptor.intercept(invocation);
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        Benchmark.report("audit insert: no interceptor", "%8.3f us/call", baseline / 1000);
+        Benchmark.report("audit insert: reflective (legacy)", "%8.3f us/call", legacy / 1000);
+        Benchmark.report("audit insert: ClassValue + MethodHandle", "%8.3f us/call", current / 1000);
+    }
+
+    /**
+     * 旧的 AuditInterceptor：每次调用都通过 getDeclaredField 检查和设置字段
+     */
+    private static class LegacyAuditInterceptor {
+
+        Object intercept(Invocation invocation) throws Exception {
+            MappedStatement mappedStatement = (MappedStatement) invocation.getArgs()[0];
+            SqlCommandType sqlCommandType = mappedStatement.getSqlCommandType();
+            Object parameter = invocation.getArgs()[1];
+            String currentUserId = SecurityUtil.getUserId();
+            Date now = new Date();
+            if (sqlCommandType == SqlCommandType.INSERT && parameter != null) {
+                processEntityFields(parameter, true, currentUserId, now);
+            }
+            if (sqlCommandType == SqlCommandType.UPDATE && parameter != null) {
+                processEntityFields(parameter, false, currentUserId, now);
+            }
+            return invocation.proceed();
+        }
+
+        private void processEntityFields(Object parameter, boolean isInsert, String userId, Date now) {
+            if (parameter instanceof Map) {
+                for (Object value : ((Map<?, ?>) parameter).values()) {
+                    if (value != null && isEntityObject(value)) {
+                        setAuditFields(value, isInsert, userId, now);
+                    }
+                }
+                return;
+            }
+            if (isEntityObject(parameter)) {
+                setAuditFields(parameter, isInsert, userId, now);
+            }
+        }
+
+        private boolean isEntityObject(Object obj) {
+            Class<?> clazz = obj.getClass();
+            return hasField(clazz, "createTime") && hasField(clazz, "createBy")
+                    && hasField(clazz, "updateTime") && hasField(clazz, "updateBy");
+        }
+
+        private void setAuditFields(Object entity, boolean isInsert, String userId, Date now) {
+            Class<?> clazz = entity.getClass();
+            if (isInsert) {
+                setFieldValue(entity, clazz, "createTime", now);
+                setFieldValue(entity, clazz, "createBy", userId);
+            } else {
+                setFieldValue(entity, clazz, "updateTime", now);
+                setFieldValue(entity, clazz, "updateBy", userId);
+            }
+        }
+
+        private boolean hasField(Class<?> clazz, String fieldName) {
+            return getDeclaredField(clazz, fieldName) != null;
+        }
+
+        private void setFieldValue(Object obj, Class<?> clazz, String fieldName, Object value) {
+            try {
+                Field field = getDeclaredField(clazz, fieldName);
+                if (field != null) {
+                    field.setAccessible(true);
+                    field.get(obj);
+                    field.set(obj, value);
+                }
+            } catch (Exception e) {
+                // 忽略字段设置异常
+            }
+        }
+
+        private Field getDeclaredField(Class<?> clazz, String fieldName) {
+            try {
+                return clazz.getDeclaredField(fieldName);
+            } catch (NoSuchFieldException e) {
+                return clazz.getSuperclass() != null ? getDeclaredField(clazz.getSuperclass(), fieldName) : null;
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package org.xioamila.common.interceptor;
+
+import com.baomidou.mybatisplus.core.toolkit.Constants;
+import lombok.Data;
+import org.apache.ibatis.binding.MapperMethod;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.xioamila.common.context.UserContext;
+import org.xioamila.entity.User;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class AuditInterceptorTest {
+
+    private static final int BATCH_SIZE = 10_000;
+
+    private static final String USER_ID = "1001";
+
+    private final AuditInterceptor interceptor = new AuditInterceptor();
+
+    private final Configuration configuration = new Configuration();
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setId(USER_ID);
+        UserContext.setUser(user);
+    }
+
+    @AfterEach
+    void tearDown() {
+        UserContext.clear();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        for (Object key : TransactionSynchronizationManager.getResourceMap().keySet()) {
+            TransactionSynchronizationManager.unbindResource(key);
+        }
+    }
+
+    @Test
+    void fillsWholeBatchOnceForSharedCollection() throws Throwable {
+        CountingList<AuditEntity> entities = new CountingList<>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            entities.add(new AuditEntity());
+        }
+
+        // MyBatis-Plus 批量方法的参数：同一个集合以 coll 和 list 两个键出现
+        MapperMethod.ParamMap<Object> paramMap = new MapperMethod.ParamMap<>();
+        paramMap.put(Constants.COLLECTION, entities);
+        paramMap.put("list", entities);
+
+        intercept(SqlCommandType.INSERT, paramMap);
+
+        assertThat(entities.iterations).isEqualTo(1);
+        Date createTime = entities.get(0).getCreateTime();
+        assertThat(createTime).isNotNull();
+        assertThat(entities).allSatisfy(entity -> {
+            assertThat(entity.getCreateTime()).isSameAs(createTime);
+            assertThat(entity.getCreateBy()).isEqualTo(USER_ID);
+        });
+
+        entities.iterations = 0;
+        intercept(SqlCommandType.UPDATE, paramMap);
+
+        assertThat(entities.iterations).isEqualTo(1);
+        Date updateTime = entities.get(0).getUpdateTime();
+        assertThat(updateTime).isNotNull();
+        assertThat(entities).allSatisfy(entity -> {
+            assertThat(entity.getUpdateTime()).isSameAs(updateTime);
+            assertThat(entity.getUpdateBy()).isEqualTo(USER_ID);
+        });
+    }
+
+    @Test
+    void sharesContextWithinTransaction() throws Throwable {
+        TransactionSynchronizationManager.initSynchronization();
+
+        // saveBatch 在同一事务中逐条执行插入
+        AuditEntity first = new AuditEntity();
+        AuditEntity second = new AuditEntity();
+        intercept(SqlCommandType.INSERT, first);
+        intercept(SqlCommandType.INSERT, second);
+
+        assertThat(second.getCreateTime()).isSameAs(first.getCreateTime());
+        assertThat(second.getCreateBy()).isEqualTo(USER_ID);
+        assertThat(TransactionSynchronizationManager.getResourceMap()).hasSize(1);
+        assertThat(TransactionSynchronizationManager.getSynchronizations()).hasSize(1);
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+        assertThat(TransactionSynchronizationManager.getResourceMap()).isEmpty();
+
+        // 事务结束后重新获取
+        AuditEntity third = new AuditEntity();
+        intercept(SqlCommandType.INSERT, third);
+        assertThat(third.getCreateTime()).isNotSameAs(first.getCreateTime());
+    }
+
+    private void intercept(SqlCommandType commandType, Object parameter) throws Throwable {
+        MappedStatement mappedStatement = new MappedStatement.Builder(configuration, "test." + commandType,
+                new StaticSqlSource(configuration, "SELECT 1"), commandType).build();
+        Executor executor = mock(Executor.class);
+        Invocation invocation = new Invocation(executor,
+                Executor.class.getMethod("update", MappedStatement.class, Object.class),
+                new Object[]{mappedStatement, parameter});
+
+        interceptor.intercept(invocation);
+
+        verify(executor, times(1)).update(any(MappedStatement.class), any());
+    }
+
+    @Data
+    static class AuditEntity {
+
+        private Date createTime;
+
+        private String createBy;
+
+        private Date updateTime;
+
+        private String updateBy;
+    }
+
+    /**
+     * 记录被遍历次数的集合
+     */
+    static class CountingList<E> extends ArrayList<E> {
+
+        int iterations;
+
+        @Override
+        public Iterator<E> iterator() {
+            iterations++;
+            return super.iterator();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.xioamila.common.interceptor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.xioamila.common.Benchmark;
+import org.xioamila.common.config.JwtProperties;
+import org.xioamila.common.context.UserContext;
+import org.xioamila.common.utils.SecurityUtil;
+import org.xioamila.entity.User;
+
+import javax.crypto.SecretKey;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 每个请求的 Token 验证开销：旧实现（validateToken 和 createUserFromToken 各新建一个解析器并验证一次签名）
+ * 与 JwtInterceptor.preHandle（同一 Token 只验证一次，之后命中已验证 Token 缓存）
+ */
+@EnabledIfSystemProperty(named = Benchmark.ENABLED, matches = "true")
+class JwtInterceptorBenchmarkTest {
+
+    private static final String SECRET = "KXp4s8F3j9MwqBvT6nRcY7Vh2zLk5gPfA";
+
+    private static final int OPERATIONS = 100_000;
+
+    private final JwtProperties jwtProperties = new JwtProperties();
+
+    private final SecretKey key = Keys.hmacShaKeyFor(SECRET.getBytes());
+
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        jwtProperties.setSecret(SECRET);
+        SecurityUtil securityUtil = new SecurityUtil();
+        ReflectionTestUtils.setField(securityUtil, "tempJwtProperties", jwtProperties);
+        securityUtil.init();
+
+        Map<String, String> claims = new HashMap<>();
+        claims.put(SecurityUtil.USERID, "1001");
+        claims.put(SecurityUtil.USERNAME, "admin");
+        claims.put(SecurityUtil.NICKNAME, "管理员");
+        token = SecurityUtil.createJWT(claims).getToken();
+    }
+
+    @AfterEach
+    void tearDown() {
+        UserContext.clear();
+    }
+
+    @Test
+    void overheadPerRequest() throws Exception {
+        JwtInterceptor interceptor = new JwtInterceptor(new ObjectMapper(), jwtProperties, false);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/music/play");
+        request.addParameter("token", token);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThat(interceptor.preHandle(request, response, null)).isTrue();
+        assertThat(UserContext.getUser().getId()).isEqualTo("1001");
+        assertThat(legacyVerify(token).getId()).isEqualTo("1001");
+
+        // 旧实现每次构建解析器（加载 JSON 反序列化器），单次耗时较长，减少执行次数
+        double legacy = Benchmark.nanosPerOp(OPERATIONS / 20, () -> UserContext.setUser(legacyVerify(token)));
+        double uncached = Benchmark.nanosPerOp(OPERATIONS, () -> SecurityUtil.parseJWT(token));
+        double current = Benchmark.nanosPerOp(OPERATIONS, () -> {
+            interceptor.preHandle(request, response, null);
+            interceptor.afterCompletion(request, response, null, null);
+        });
+
+        Benchmark.report("token: validate + createUser (two parsers)", "%8.2f us/request", legacy / 1000);
+        Benchmark.report("token: verify once (shared parser, cache miss)", "%8.2f us/request", uncached / 1000);
+        Benchmark.report("token: JwtInterceptor.preHandle (cached)", "%8.2f us/request", current / 1000);
+    }
+
+    /**
+     * 旧实现：validateToken 和 createUserFromToken 各调用一次 parseJWT，每次新建解析器
+     */
+    private User legacyVerify(String token) {
+        parse(token);
+        Claims claims = parse(token);
+        User user = new User();
+        user.setId(claims.get(SecurityUtil.USERID).toString());
+        user.setUsername(claims.get(SecurityUtil.USERNAME).toString());
+        user.setNickname(claims.get(SecurityUtil.NICKNAME).toString());
+        return user;
+    }
+
+    private Claims parse(String token) {
+        return Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+}
@@ -0,0 +1,127 @@
+package org.xioamila.common.storage;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.xioamila.entity.Music;
+import org.xioamila.mapper.MusicMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MusicIngestorTest {
+
+    private static final String FILE_PATH = "0123456789abcdef.mp3";
+
+    @TempDir
+    Path musicDirectory;
+
+    private final MusicMapper musicMapper = mock(MusicMapper.class);
+
+    private MusicIngestor musicIngestor;
+
+    private Path musicFile;
+
+    @BeforeAll
+    static void initTableInfo() {
+        // Wrappers.lambdaQuery 需要实体的表信息
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), Music.class);
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // 后台删除任务在当前线程执行
+        ThreadPoolTaskExecutor taskExecutor = mock(ThreadPoolTaskExecutor.class);
+        doAnswer(invocation -> {
+            invocation.getArgument(0, Runnable.class).run();
+            return null;
+        }).when(taskExecutor).execute(any(Runnable.class));
+
+        musicIngestor = new MusicIngestor(mock(ScratchSpace.class), mock(CoverStore.class), musicMapper, taskExecutor);
+        // 音乐目录配置为相对项目根目录的路径
+        ReflectionTestUtils.setField(musicIngestor, "musicFilePath",
+                Paths.get(System.getProperty("user.dir")).relativize(musicDirectory).toString());
+        musicFile = Files.write(musicDirectory.resolve(FILE_PATH), new byte[]{1});
+        when(musicMapper.selectCount(any())).thenReturn(0L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void releaseInTransactionDeletesAfterCompletion() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        musicIngestor.release(FILE_PATH, "1");
+        assertThat(musicFile).exists();
+
+        completeTransaction();
+        assertThat(musicFile).doesNotExist();
+    }
+
+    @Test
+    void referencedFileIsKept() {
+        when(musicMapper.selectCount(any())).thenReturn(1L);
+
+        musicIngestor.release(FILE_PATH, null);
+
+        assertThat(musicFile).exists();
+    }
+
+    @Test
+    void pinnedFileIsKeptUntilUnpinned() {
+        // 并发上传复用了该文件，音乐记录尚未提交
+        musicIngestor.pin(FILE_PATH);
+        TransactionSynchronizationManager.initSynchronization();
+        musicIngestor.release(FILE_PATH, "1");
+        completeTransaction();
+        assertThat(musicFile).exists();
+
+        Music music = new Music();
+        music.setFilePath(FILE_PATH);
+        musicIngestor.unpin(music);
+        musicIngestor.release(FILE_PATH, null);
+        assertThat(musicFile).doesNotExist();
+    }
+
+    @Test
+    void pinInTransactionIsReleasedAfterCompletion() {
+        TransactionSynchronizationManager.initSynchronization();
+        musicIngestor.pin(FILE_PATH);
+        completeTransaction();
+
+        musicIngestor.release(FILE_PATH, null);
+        assertThat(musicFile).doesNotExist();
+    }
+
+    /**
+     * 模拟事务提交：执行并清除已注册的事务同步
+     */
+    private static void completeTransaction() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+}
@@ -0,0 +1,64 @@
+package org.xioamila.common.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.xioamila.common.config.ScratchProperties;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScratchSpaceTest {
+
+    @TempDir
+    Path musicDirectory;
+
+    @Test
+    void defaultsToMusicDirectory() throws IOException {
+        ScratchSpace scratchSpace = create(new ScratchProperties());
+
+        assertThat(scratchSpace.getMetrics().get("directory"))
+                .isEqualTo(musicDirectory.resolve(".scratch").toString());
+    }
+
+    @Test
+    void usesConfiguredDirectory(@TempDir Path scratchDirectory) throws IOException {
+        ScratchProperties properties = new ScratchProperties();
+        properties.setPath(scratchDirectory.toString());
+
+        ScratchSpace scratchSpace = create(properties);
+
+        assertThat(scratchSpace.getMetrics().get("directory")).isEqualTo(scratchDirectory.toString());
+    }
+
+    @Test
+    void moveToReleasesQuota() throws IOException {
+        ScratchSpace scratchSpace = create(new ScratchProperties());
+        Path target = musicDirectory.resolve("0123456789abcdef.mp3");
+
+        try (ScratchSpace.ScratchFile scratchFile = scratchSpace.allocate(".mp3", 3)) {
+            Files.write(scratchFile.getPath(), new byte[]{1, 2, 3});
+            assertThat(scratchSpace.getMetrics().get("bytesInUse")).isEqualTo(3L);
+
+            scratchFile.moveTo(target);
+            assertThat(scratchFile.getPath()).doesNotExist();
+        }
+
+        assertThat(target).hasBinaryContent(new byte[]{1, 2, 3});
+        assertThat(scratchSpace.getMetrics().get("bytesInUse")).isEqualTo(0L);
+        assertThat(scratchSpace.getMetrics().get("filesInUse")).isEqualTo(0);
+    }
+
+    private ScratchSpace create(ScratchProperties properties) throws IOException {
+        ScratchSpace scratchSpace = new ScratchSpace(properties);
+        // 音乐目录配置为相对项目根目录的路径
+        ReflectionTestUtils.setField(scratchSpace, "musicFilePath",
+                Paths.get(System.getProperty("user.dir")).relativize(musicDirectory).toString());
+        scratchSpace.init();
+        return scratchSpace;
+    }
+}
@@ -0,0 +1,178 @@
+package org.xioamila.common.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.StreamUtils;
+import org.xioamila.common.Benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 范围响应的三种发送方式：旧的 RandomAccessFile 包装流、FileRegionResource、sendfile（FileChannel.transferTo）
+ * 都写入本机回环 socket（由后台线程读取丢弃），前两种按 Spring 写出 Resource 的方式（StreamUtils.copy）经过堆复制；
+ * 统计吞吐量，以及发送线程每 MB 的 CPU 时间和堆分配
+ */
+@EnabledIfSystemProperty(named = Benchmark.ENABLED, matches = "true")
+class FileRegionResourceBenchmarkTest {
+
+    private static final int FILE_SIZE = 64 * 1024 * 1024;
+
+    private static final double MB = 1024 * 1024;
+
+    // 跳过第一个字节，与普通的 Range 请求一样从文件中间开始
+    private static final long START = 1;
+
+    private static final long LENGTH = FILE_SIZE - START;
+
+    @TempDir
+    Path directory;
+
+    private File file;
+
+    private ServerSocketChannel server;
+
+    private SocketChannel socket;
+
+    private Thread drain;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        byte[] content = new byte[FILE_SIZE];
+        new Random(1).nextBytes(content);
+        file = Files.write(directory.resolve("track.flac"), content).toFile();
+
+        server = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        socket = SocketChannel.open(server.getLocalAddress());
+        SocketChannel peer = server.accept();
+        drain = new Thread(() -> {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(256 * 1024);
+            try (SocketChannel channel = peer) {
+                while (channel.read(buffer) >= 0) {
+                    buffer.clear();
+                }
+            } catch (IOException e) {
+                // 连接关闭
+            }
+        }, "benchmark-drain");
+        drain.setDaemon(true);
+        drain.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        socket.close();
+        server.close();
+        drain.join(1000);
+    }
+
+    @Test
+    void rangeThroughput() throws Exception {
+        assertThat(read(new FileRegionResource(file, START, 1024).getInputStream()))
+                .isEqualTo(read(new LegacyRangeInputStream(file, START, 1024)));
+
+        OutputStream out = Channels.newOutputStream(socket);
+        report("range: RandomAccessFile InputStream", () -> copy(new LegacyRangeInputStream(file, START, LENGTH), out));
+        report("range: FileRegionResource", () -> copy(new FileRegionResource(file, START, LENGTH).getInputStream(), out));
+        report("range: FileChannel.transferTo (sendfile)", () -> transfer(socket));
+    }
+
+    private static void report(String name, Benchmark.Operation operation) throws Exception {
+        double megabytes = LENGTH / MB;
+        double nanos = Benchmark.nanosPerOp(4, operation);
+        double cpuNanos = Benchmark.cpuNanosPerOp(4, operation);
+        double allocated = Benchmark.allocatedBytesPerOp(4, operation);
+        Benchmark.report(name, "%7.0f MB/s %9.0f ns CPU/MB %7.0f B allocated/MB",
+                megabytes / (nanos / 1e9), cpuNanos / megabytes, allocated / megabytes);
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        try (InputStream input = in) {
+            assertThat(StreamUtils.copy(input, out)).isEqualTo(LENGTH);
+        }
+    }
+
+    private void transfer(WritableByteChannel sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long position = START;
+            long end = START + LENGTH;
+            while (position < end) {
+                position += channel.transferTo(position, end - position, sink);
+            }
+        }
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            return StreamUtils.copyToByteArray(input);
+        }
+    }
+
+    /**
+     * 旧的范围资源实现（FileParseUtil.createRangeResource 中的匿名 InputStream）
+     */
+    private static class LegacyRangeInputStream extends InputStream {
+
+        private final RandomAccessFile randomAccessFile;
+
+        private final long length;
+
+        private long bytesRead = 0;
+
+        LegacyRangeInputStream(File file, long start, long length) throws IOException {
+            this.randomAccessFile = new RandomAccessFile(file, "r");
+            this.randomAccessFile.seek(start);
+            this.length = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (bytesRead >= length) {
+                return -1;
+            }
+            int result = randomAccessFile.read();
+            if (result != -1) {
+                bytesRead++;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (bytesRead >= length) {
+                return -1;
+            }
+            int maxRead = (int) Math.min(len, length - bytesRead);
+            int read = randomAccessFile.read(b, off, maxRead);
+            if (read != -1) {
+                bytesRead += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            randomAccessFile.close();
+        }
+    }
+}
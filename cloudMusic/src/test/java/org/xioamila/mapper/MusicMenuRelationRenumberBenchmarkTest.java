@@ -0,0 +1,169 @@
+package org.xioamila.mapper;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.xioamila.common.Benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 歌单重新编号（MusicMenuRelationMapper.updateBatchPosition）在 1k、10k、50k 首音乐时的耗时：
+ * 旧语句对每一行做一次关联 count（O(n²)），新语句用 ROW_NUMBER() 扫描一次
+ * 在 H2（MySQL 模式）中运行：H2 不支持 UPDATE ... JOIN，新语句改写为等价的 MERGE ... USING，计算方式与 MySQL 中相同
+ * 旧语句在 50k 时耗时过长，默认跳过，使用 -Dbenchmark.full=true 运行
+ */
+@EnabledIfSystemProperty(named = Benchmark.ENABLED, matches = "true")
+class MusicMenuRelationRenumberBenchmarkTest {
+
+    private static final String MENU_ID = "1";
+
+    private static final long STEP = 1024;
+
+    private static final String LEGACY_RENUMBER = "UPDATE music_menu_relation t1 "
+            + "SET t1.position = ( "
+            + "   SELECT count(1) "
+            + "   FROM ( "
+            + "       SELECT id, position FROM music_menu_relation "
+            + "       WHERE deleted = '0' AND menu_id = ? "
+            + "   ) t2 "
+            + "   WHERE t2.position < t1.position OR (t2.position = t1.position AND t2.id < t1.id) "
+            + ") * ? "
+            + "WHERE t1.deleted = '0' AND t1.menu_id = ?";
+
+    private static final String ROW_NUMBER_RENUMBER = "MERGE INTO music_menu_relation t1 "
+            + "USING ( "
+            + "   SELECT id, ROW_NUMBER() OVER (ORDER BY position, id) - 1 AS row_index "
+            + "   FROM music_menu_relation "
+            + "   WHERE deleted = '0' AND menu_id = ? "
+            + ") t2 ON t2.id = t1.id "
+            + "WHEN MATCHED AND t1.position <> t2.row_index * ? THEN UPDATE SET t1.position = t2.row_index * ?";
+
+    private Connection connection;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:renumber;MODE=MySQL");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE music_menu_relation ("
+                    + "id VARCHAR(32) PRIMARY KEY, menu_id VARCHAR(32), music_id VARCHAR(32), "
+                    + "position BIGINT, deleted CHAR(1) DEFAULT '0')");
+            statement.execute("CREATE INDEX idx_music_menu_relation_position "
+                    + "ON music_menu_relation (menu_id, deleted, position, id)");
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    @Test
+    void renumber() throws Exception {
+        // 两种语句的结果一致
+        seed(1000);
+        execute(LEGACY_RENUMBER, MENU_ID, STEP, MENU_ID);
+        List<Long> expected = positions();
+        scramble(1000);
+        execute(ROW_NUMBER_RENUMBER, MENU_ID, STEP, STEP);
+        assertThat(positions()).isEqualTo(expected);
+
+        boolean full = Boolean.getBoolean(Benchmark.ENABLED + ".full");
+        for (int tracks : new int[]{1000, 10_000, 50_000}) {
+            seed(tracks);
+            if (tracks < 50_000 || full) {
+                Benchmark.report("renumber " + tracks + " tracks: correlated count",
+                        "%10.1f ms", time(tracks, LEGACY_RENUMBER, MENU_ID, STEP, MENU_ID));
+            }
+            Benchmark.report("renumber " + tracks + " tracks: ROW_NUMBER()",
+                    "%10.1f ms", time(tracks, ROW_NUMBER_RENUMBER, MENU_ID, STEP, STEP));
+        }
+    }
+
+    /**
+     * 打乱位置后执行一次，取三次中最快的一次（毫秒）
+     */
+    private double time(int tracks, String sql, Object... args) throws SQLException {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) {
+            scramble(tracks);
+            long start = System.nanoTime();
+            execute(sql, args);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1e6;
+    }
+
+    /**
+     * 写入一个歌单的音乐关系（另一个歌单放同样多的行，与实际表中多个歌单并存一致）
+     */
+    private void seed(int tracks) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("TRUNCATE TABLE music_menu_relation");
+        }
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO music_menu_relation (id, menu_id, music_id, position) VALUES (?, ?, ?, 0)")) {
+            for (int i = 0; i < tracks * 2; i++) {
+                statement.setString(1, String.valueOf(1_000_000_000L + i));
+                statement.setString(2, i < tracks ? MENU_ID : "2");
+                statement.setString(3, String.valueOf(i));
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        scramble(tracks);
+    }
+
+    /**
+     * 随机打乱歌单中的位置（包含重复位置，依靠 id 决定先后）
+     */
+    private void scramble(int tracks) throws SQLException {
+        Random random = new Random(tracks);
+        try (PreparedStatement statement = connection.prepareStatement(
+                "UPDATE music_menu_relation SET position = ? WHERE id = ?")) {
+            for (int i = 0; i < tracks; i++) {
+                statement.setLong(1, random.nextInt(tracks));
+                statement.setString(2, String.valueOf(1_000_000_000L + i));
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private void execute(String sql, Object... args) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < args.length; i++) {
+                statement.setObject(i + 1, args[i]);
+            }
+            statement.executeUpdate();
+        }
+    }
+
+    private List<Long> positions() throws SQLException {
+        List<Long> positions = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT position FROM music_menu_relation WHERE menu_id = ? ORDER BY id")) {
+            statement.setString(1, MENU_ID);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    positions.add(resultSet.getLong(1));
+                }
+            }
+        }
+        return positions;
+    }
+}
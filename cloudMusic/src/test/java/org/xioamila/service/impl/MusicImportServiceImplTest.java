@@ -0,0 +1,98 @@
+package org.xioamila.service.impl;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+import org.xioamila.common.search.MusicSearchIndex;
+import org.xioamila.common.storage.MusicIngestor;
+import org.xioamila.entity.Music;
+import org.xioamila.mapper.MusicMapper;
+import org.xioamila.service.MusicService;
+import org.xioamila.vo.ImportJobVo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MusicImportServiceImplTest {
+
+    private static final int FILE_COUNT = 1200;
+
+    private final MusicService musicService = mock(MusicService.class);
+
+    private final MusicMapper musicMapper = mock(MusicMapper.class);
+
+    private final MusicIngestor musicIngestor = mock(MusicIngestor.class);
+
+    private final AtomicInteger ingested = new AtomicInteger();
+
+    // 每次入库时的批次大小和当时已解析的文件数
+    private final List<int[]> batches = new CopyOnWriteArrayList<>();
+
+    private MusicImportServiceImpl importService;
+
+    @BeforeAll
+    static void initTableInfo() {
+        // Wrappers.lambdaQuery 需要实体的表信息
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), Music.class);
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(musicMapper.selectList(any())).thenReturn(Collections.emptyList());
+        when(musicIngestor.ingestUpload(any(), any())).thenAnswer(invocation -> {
+            ingested.incrementAndGet();
+            Music music = new Music();
+            music.setTitle(invocation.getArgument(0, MultipartFile.class).getOriginalFilename());
+            return music;
+        });
+        when(musicService.saveBatch(any(), anyInt())).thenAnswer(invocation -> {
+            batches.add(new int[]{invocation.getArgument(0, Collection.class).size(), ingested.get()});
+            return true;
+        });
+
+        importService = new MusicImportServiceImpl(musicService, musicMapper, musicIngestor,
+                mock(MusicSearchIndex.class), mock(ThreadPoolTaskExecutor.class));
+        ReflectionTestUtils.setField(importService, "maxConcurrent", 4);
+        importService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        importService.destroy();
+    }
+
+    @Test
+    void savesChunksWhileParsing() {
+        List<MultipartFile> files = new ArrayList<>();
+        for (int i = 0; i < FILE_COUNT; i++) {
+            files.add(new MockMultipartFile("files", "歌手 - 歌曲" + i + ".mp3", "audio/mpeg", new byte[]{1}));
+        }
+
+        ImportJobVo job = importService.batchUpload(files);
+
+        assertThat(job.getSucceeded().get()).isEqualTo(FILE_COUNT);
+        assertThat(job.getParsed().get()).isEqualTo(FILE_COUNT);
+        assertThat(job.getProcessedBytes().get()).isEqualTo(FILE_COUNT);
+        assertThat(batches).extracting(batch -> batch[0]).containsExactly(500, 500, 200);
+        // 第一批入库时最多只多解析了同时解析上限个文件
+        assertThat(batches.get(0)[1]).isLessThanOrEqualTo(500 + 4);
+    }
+}
@@ -0,0 +1,114 @@
+package org.xioamila.service.impl;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.xioamila.common.cache.CountCache;
+import org.xioamila.common.cache.MenuMusicCache;
+import org.xioamila.common.cache.MusicCache;
+import org.xioamila.dto.MenuMusicBatchDto;
+import org.xioamila.entity.Music;
+import org.xioamila.entity.MusicMenuRelation;
+import org.xioamila.mapper.MusicMapper;
+import org.xioamila.mapper.MusicMenuMapper;
+import org.xioamila.mapper.MusicMenuRelationMapper;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MusicMenuRelationServiceImplTest {
+
+    private static final String MENU_ID = "1";
+
+    private final MusicMenuRelationMapper relationMapper = mock(MusicMenuRelationMapper.class);
+
+    private final MusicMenuMapper musicMenuMapper = mock(MusicMenuMapper.class);
+
+    private final MenuMusicCache menuMusicCache = mock(MenuMusicCache.class);
+
+    private MusicMenuRelationServiceImpl relationService;
+
+    @BeforeAll
+    static void initTableInfo() {
+        // LambdaQueryWrapper 需要实体的表信息
+        MapperBuilderAssistant assistant = new MapperBuilderAssistant(new MybatisConfiguration(), "");
+        TableInfoHelper.initTableInfo(assistant, MusicMenuRelation.class);
+        TableInfoHelper.initTableInfo(assistant, Music.class);
+    }
+
+    @BeforeEach
+    void setUp() {
+        relationService = spy(new MusicMenuRelationServiceImpl(relationMapper, musicMenuMapper, mock(MusicMapper.class),
+                mock(CountCache.class), mock(MusicCache.class), menuMusicCache, mock(ThreadPoolTaskExecutor.class)));
+        ReflectionTestUtils.setField(relationService, "baseMapper", relationMapper);
+        when(relationMapper.insert(any())).thenReturn(1);
+    }
+
+    @Test
+    void addMusicIncrementsStats() {
+        MusicMenuRelation relation = new MusicMenuRelation();
+        relation.setMenuId(MENU_ID);
+        relation.setMusicId("m1");
+
+        relationService.addMusic(relation);
+
+        verify(musicMenuMapper).adjustStats(MENU_ID, Collections.singletonList("m1"), 1);
+    }
+
+    @Test
+    void deleteMusicDecrementsStatsOfRemovedMusic() {
+        when(relationMapper.selectList(any())).thenReturn(Arrays.asList(relation("m1"), relation("m2")));
+
+        relationService.deleteMusic(MENU_ID, Arrays.asList("r1", "r2", "r3"));
+
+        verify(relationMapper).delete(any());
+        verify(musicMenuMapper).adjustStats(MENU_ID, Arrays.asList("m1", "m2"), -1);
+    }
+
+    @Test
+    void deleteMusicOfOtherMenuKeepsStats() {
+        when(relationMapper.selectList(any())).thenReturn(Collections.emptyList());
+
+        relationService.deleteMusic(MENU_ID, Collections.singletonList("r1"));
+
+        verify(relationMapper, never()).delete(any());
+        verify(musicMenuMapper, never()).adjustStats(anyString(), anyCollection(), anyInt());
+    }
+
+    @Test
+    void batchAddIncrementsStatsOfNewMusicOnly() {
+        // m1 已在歌单中
+        when(relationMapper.selectList(any())).thenReturn(Collections.singletonList(relation("m1")));
+        doReturn(true).when(relationService).saveBatch(anyCollection(), anyInt());
+        MenuMusicBatchDto batch = new MenuMusicBatchDto();
+        batch.setMenuId(MENU_ID);
+        batch.setAddMusicIds(Arrays.asList("m1", "m2", "m3", "m2"));
+
+        relationService.batchMusic(batch);
+
+        verify(musicMenuMapper).adjustStats(MENU_ID, Arrays.asList("m2", "m3"), 1);
+    }
+
+    private static MusicMenuRelation relation(String musicId) {
+        MusicMenuRelation relation = new MusicMenuRelation();
+        relation.setMenuId(MENU_ID);
+        relation.setMusicId(musicId);
+        return relation;
+    }
+}
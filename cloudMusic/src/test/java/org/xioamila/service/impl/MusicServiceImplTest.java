@@ -0,0 +1,90 @@
+package org.xioamila.service.impl;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.xioamila.common.cache.CountCache;
+import org.xioamila.common.cache.MenuMusicCache;
+import org.xioamila.common.cache.MusicCache;
+import org.xioamila.common.search.MusicSearchIndex;
+import org.xioamila.common.stats.MusicCharts;
+import org.xioamila.common.stats.MusicCounter;
+import org.xioamila.common.storage.CoverStore;
+import org.xioamila.common.storage.MusicIngestor;
+import org.xioamila.common.storage.ResolvedFileCache;
+import org.xioamila.entity.Music;
+import org.xioamila.entity.MusicMenuRelation;
+import org.xioamila.mapper.MusicMapper;
+import org.xioamila.mapper.MusicMenuMapper;
+import org.xioamila.mapper.MusicMenuRelationMapper;
+
+import java.util.Arrays;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MusicServiceImplTest {
+
+    private static final String MUSIC_ID = "100";
+
+    private final MusicMapper musicMapper = mock(MusicMapper.class);
+
+    private final MusicMenuMapper musicMenuMapper = mock(MusicMenuMapper.class);
+
+    private final MusicMenuRelationMapper relationMapper = mock(MusicMenuRelationMapper.class);
+
+    private final MenuMusicCache menuMusicCache = mock(MenuMusicCache.class);
+
+    private MusicServiceImpl musicService;
+
+    @BeforeAll
+    static void initTableInfo() {
+        // LambdaQueryWrapper 需要实体的表信息
+        MapperBuilderAssistant assistant = new MapperBuilderAssistant(new MybatisConfiguration(), "");
+        TableInfoHelper.initTableInfo(assistant, MusicMenuRelation.class);
+        TableInfoHelper.initTableInfo(assistant, Music.class);
+    }
+
+    @BeforeEach
+    void setUp() {
+        musicService = new MusicServiceImpl(musicMapper, mock(MusicIngestor.class), mock(CoverStore.class),
+                mock(MusicSearchIndex.class), mock(CountCache.class), mock(MusicCache.class),
+                mock(ResolvedFileCache.class), mock(MusicCounter.class), mock(MusicCharts.class),
+                musicMenuMapper, relationMapper, menuMusicCache);
+        ReflectionTestUtils.setField(musicService, "baseMapper", musicMapper);
+    }
+
+    @Test
+    void deleteMusicDecrementsMenusBeforeRemovingRelations() {
+        Music music = new Music();
+        music.setId(MUSIC_ID);
+        music.setFilePath("0123456789abcdef.mp3");
+        when(musicMapper.selectById(MUSIC_ID)).thenReturn(music);
+        when(relationMapper.selectList(any())).thenReturn(Arrays.asList(relation("1"), relation("2")));
+        when(musicMapper.deleteById(MUSIC_ID)).thenReturn(1);
+
+        musicService.deleteMusic(MUSIC_ID);
+
+        // 先按仍存在的关系减去各歌单的数量和时长，再删除关系
+        InOrder inOrder = inOrder(musicMenuMapper, relationMapper);
+        inOrder.verify(musicMenuMapper).decrementByMusic(MUSIC_ID);
+        inOrder.verify(relationMapper).delete(any());
+        verify(menuMusicCache).invalidate("1");
+        verify(menuMusicCache).invalidate("2");
+    }
+
+    private static MusicMenuRelation relation(String menuId) {
+        MusicMenuRelation relation = new MusicMenuRelation();
+        relation.setMenuId(menuId);
+        relation.setMusicId(MUSIC_ID);
+        return relation;
+    }
+}